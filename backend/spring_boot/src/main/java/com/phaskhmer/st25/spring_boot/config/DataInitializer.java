@@ -6,12 +6,13 @@ import org.springframework.context.annotation.Configuration;
 
 import com.phaskhmer.st25.spring_boot.model.listing.ListingStatus;
 import com.phaskhmer.st25.spring_boot.repository.ListingStatusRepository;
+import com.phaskhmer.st25.spring_boot.service.listing.ReferenceDataRegistry;
 
 @Configuration
 public class DataInitializer {
 
     @Bean
-    public CommandLineRunner initStatuses(ListingStatusRepository statusRepository) {
+    public CommandLineRunner initStatuses(ListingStatusRepository statusRepository, ReferenceDataRegistry referenceDataRegistry) {
         return args -> {
             if (statusRepository.count() == 0) {
                 statusRepository.save(new ListingStatus(null, "active", "Listing is visible and tradable."));
@@ -20,6 +21,8 @@ public class DataInitializer {
                 statusRepository.save(new ListingStatus(null, "banned", "Listing has been removed due to policy violation."));
                 System.out.println("Initialized 4 Listing Statuses.");
             }
+            // Load categories and statuses into memory now that the seed rows exist
+            referenceDataRegistry.refresh();
         };
     }
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.phaskhmer.st25.spring_boot.config;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.phaskhmer.st25.spring_boot.service.listing.ListingService;
+
+@Configuration
+public class FacetCountInitializer {
+
+    /**
+     * Seeds the in-memory facet counters once on boot; after that they are updated on every listing write.
+     */
+    @Bean
+    public CommandLineRunner rebuildFacetCounts(ListingService listingService) {
+        return args -> listingService.rebuildFacetCounts();
+    }
+}
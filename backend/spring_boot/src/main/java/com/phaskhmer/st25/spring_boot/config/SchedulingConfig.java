@@ -0,0 +1,12 @@
+package com.phaskhmer.st25.spring_boot.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on @Scheduled background jobs (e.g. the upload storage garbage collector).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,19 @@
+package com.phaskhmer.st25.spring_boot.config;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.phaskhmer.st25.spring_boot.service.search.ListingSearchService;
+
+@Configuration
+public class SearchIndexInitializer {
+
+    /**
+     * Cold start: the search index lives in memory, so build it from the database on boot.
+     */
+    @Bean
+    public CommandLineRunner rebuildSearchIndex(ListingSearchService listingSearchService) {
+        return args -> listingSearchService.rebuild();
+    }
+}
@@ -0,0 +1,38 @@
+package com.phaskhmer.st25.spring_boot.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.phaskhmer.st25.spring_boot.service.storage.StorageShardMigrator;
+
+@Configuration
+public class StorageMigrationInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigrationInitializer.class);
+
+    @Value("${file.storage.shard-migration.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Moves uploads left in the old flat directory into their shards, in the background so startup is not held up.
+     */
+    @Bean
+    public CommandLineRunner migrateUploadsToShards(StorageShardMigrator migrator) {
+        return args -> {
+            if (!enabled) {
+                return;
+            }
+            Thread.ofPlatform().name("storage-shard-migration").daemon().start(() -> {
+                try {
+                    migrator.migrate();
+                } catch (RuntimeException e) {
+                    logger.warn("Shard migration stopped: {}", e.getMessage());
+                }
+            });
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.phaskhmer.st25.spring_boot.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.phaskhmer.st25.spring_boot.dto.CacheStatsDTO;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingDetailCache;
+import com.phaskhmer.st25.spring_boot.service.storage.HotFileCache;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/cache")
+@RequiredArgsConstructor
+public class CacheStatsController {
+
+    private final ListingDetailCache listingDetailCache;
+    private final HotFileCache hotFileCache;
+
+    /**
+     * Hit/miss/eviction counters for the in-process caches, used to size them.
+     * Request: GET /api/cache/stats
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsDTO>> getCacheStats() {
+        return ResponseEntity.ok(List.of(listingDetailCache.stats(), hotFileCache.stats()));
+    }
+}
@@ -1,12 +1,18 @@
 package com.phaskhmer.st25.spring_boot.controller;
 
 import com.phaskhmer.st25.spring_boot.dto.CartItemRequest;
-import com.phaskhmer.st25.spring_boot.model.cart.Cart;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDeltaDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartPatchDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartSummaryDTO;
 import com.phaskhmer.st25.spring_boot.service.CartService;
+import com.phaskhmer.st25.spring_boot.service.cart.CartVersionMismatchException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.security.core.userdetails.UserDetails;
 
 
@@ -29,31 +35,118 @@ public class CartController {
         return Long.valueOf(userIdString);
     }
 
+    // Versions are sent as strong ETags: "1739870123456001"
+    private static String eTagOf(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The version in an If-Match header, or null for none or "*".
+     * An unparsable value yields -1, which never matches; so does a weak tag, as If-Match compares strongly.
+     */
+    private static Long versionFrom(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            return -1L;
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Example Request: GET /api/cart
+     *
+     * Carries the cart version as ETag; a matching If-None-Match gets 304 Not Modified.
+     */
     @GetMapping
-    public ResponseEntity<Cart> getMyCart() {
+    public ResponseEntity<CartDTO> getMyCart(WebRequest webRequest) {
         Long customerId = getCurrentUserId();
-        Cart cart = cartService.getOrCreateCart(customerId);
-        return ResponseEntity.ok(cart);
+        CartDTO cart = cartService.getOrCreateCart(customerId);
+        String etag = eTagOf(cart.getVersion());
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(cart);
+    }
+
+    /**
+     * Example Request: GET /api/cart/summary
+     *
+     * Item count, subtotal and per-seller subtotals, precomputed on every cart change; cheap enough for
+     * the cart badge. Same ETag and If-None-Match handling as GET /api/cart.
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<CartSummaryDTO> getMyCartSummary(WebRequest webRequest) {
+        Long customerId = getCurrentUserId();
+        CartSummaryDTO summary = cartService.getCartSummary(customerId);
+        String etag = eTagOf(summary.getVersion());
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(summary);
+    }
+
+    /**
+     * Example Request: PATCH /api/cart
+     * If-Match: "1739870123456001"
+     * {"operations": [{"op": "add", "itemId": 12, "quantity": 1}, {"op": "set", "itemId": 7, "quantity": 3},
+     *                 {"op": "remove", "itemId": 9}]}
+     *
+     * Applies all operations or none. "set" adds the item if it is not in the cart yet, "remove" of an item
+     * that is not there does nothing. Returns only the changed lines, the removed item ids and the totals,
+     * with the new version as ETag. With If-Match, a cart that has changed since gets 412 and is left alone.
+     */
+    @PatchMapping
+    public ResponseEntity<?> patchMyCart(@RequestBody CartPatchDTO patch,
+                                         @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Long customerId = getCurrentUserId();
+        try {
+            CartDeltaDTO delta = cartService.patchCart(customerId, patch, versionFrom(ifMatch));
+            return ResponseEntity.ok().eTag(eTagOf(delta.getVersion())).body(delta);
+        } catch (CartVersionMismatchException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(eTagOf(e.getCurrentVersion())).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
     }
 
     @PostMapping("/items")
-    public ResponseEntity<Cart> addItemToMyCart(@RequestBody CartItemRequest request) {
+    public ResponseEntity<?> addItemToMyCart(@RequestBody CartItemRequest request) {
         Long customerId = getCurrentUserId();
-        Cart updatedCart = cartService.addItemToCart(customerId, request.getItemId(), request.getQuantity());
-        return ResponseEntity.ok(updatedCart);
+        try {
+            CartDTO updatedCart = cartService.addItemToCart(customerId, request.getItemId(), request.getQuantity());
+            return ResponseEntity.ok(updatedCart);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
     }
 
     @PutMapping("/items/{itemId}")
-    public ResponseEntity<Cart> updateItemInMyCart(@PathVariable Long itemId, @RequestBody CartItemRequest request) {
+    public ResponseEntity<?> updateItemInMyCart(@PathVariable Long itemId, @RequestBody CartItemRequest request) {
         Long customerId = getCurrentUserId();
-        Cart updatedCart = cartService.updateItemQuantity(customerId, itemId, request.getQuantity());
-        return ResponseEntity.ok(updatedCart);
+        try {
+            CartDTO updatedCart = cartService.updateItemQuantity(customerId, itemId, request.getQuantity());
+            return ResponseEntity.ok(updatedCart);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
     }
 
     @DeleteMapping("/items/{itemId}")
-    public ResponseEntity<Cart> removeItemFromMyCart(@PathVariable Long itemId) {
+    public ResponseEntity<?> removeItemFromMyCart(@PathVariable Long itemId) {
         Long customerId = getCurrentUserId();
-        Cart updatedCart = cartService.removeItemFromCart(customerId, itemId);
-        return ResponseEntity.ok(updatedCart);
+        try {
+            CartDTO updatedCart = cartService.removeItemFromCart(customerId, itemId);
+            return ResponseEntity.ok(updatedCart);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.phaskhmer.st25.spring_boot.controller;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import com.phaskhmer.st25.spring_boot.model.Category;
+import com.phaskhmer.st25.spring_boot.service.listing.ReferenceDataRegistry;
+
+import lombok.RequiredArgsConstructor;
+
+@RestController
+@RequestMapping("/api/public/categories")
+@RequiredArgsConstructor
+public class CategoryController {
+
+    private final ReferenceDataRegistry referenceDataRegistry;
+
+    /**
+     * Endpoint to fetch all categories, ordered by name. Served from memory; clients and proxies may
+     * cache it for an hour and revalidate with If-None-Match.
+     *
+     * Example Request:
+     * GET /api/public/categories
+     */
+    @GetMapping
+    public ResponseEntity<List<Category>> getCategories(WebRequest request) {
+        String etag = referenceDataRegistry.version();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic())
+                .eTag(etag)
+                .body(referenceDataRegistry.categories());
+    }
+}
@@ -1,50 +1,75 @@
 package com.phaskhmer.st25.spring_boot.controller;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.phaskhmer.st25.spring_boot.service.storage.FileStorageService;
+import com.phaskhmer.st25.spring_boot.service.storage.ImageVariant;
+import com.phaskhmer.st25.spring_boot.service.storage.ImageVariantService;
+import com.phaskhmer.st25.spring_boot.service.storage.StaticFileServer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import lombok.RequiredArgsConstructor;
+
 @RestController
 @RequestMapping("/api/public/files")
+@RequiredArgsConstructor
 public class FileController {
 
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    private final FileStorageService fileStorageService;
+    private final ImageVariantService imageVariantService;
+    private final StaticFileServer staticFileServer;
 
+    /**
+     * Serves an uploaded file, or a resized JPEG rendition of it.
+     *
+     * Example Requests:
+     * GET /api/public/files/3f2c...png -> the original upload
+     * GET /api/public/files/3f2c...png?variant=card -> at most 480px on the longer edge (thumb: 160px, full: 1280px)
+     *
+     * Falls back to the original when no variant can be produced (not an image, or the resize pool is busy);
+     * that fallback is sent with no-cache, so the variant replaces it once it exists. Every other response is
+     * cacheable forever (names never change meaning). All support ETag revalidation and byte ranges.
+     */
     @GetMapping("/{filename:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
+    public void serveFile(
+            @PathVariable String filename,
+            @RequestParam(name = "variant", required = false) String variantName,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        ImageVariant variant;
         try {
-            Path filePath = Paths.get(uploadDir).resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() || resource.isReadable()) {
-                String contentType = Files.probeContentType(filePath);
-                if (contentType == null) {
-                    contentType = "application/octet-stream";
-                }
-
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                        .body(resource);
+            variant = ImageVariant.fromParam(variantName);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+
+        // Located through the upload index; names that are not plain file names resolve to nothing
+        Path filePath = fileStorageService.resolve(filename);
+        if (filePath == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        boolean immutable = true;
+        if (variant != null) {
+            Path variantPath = imageVariantService.resolve(filename, variant);
+            if (variantPath != null) {
+                filePath = variantPath;
             } else {
-                return ResponseEntity.notFound().build();
+                immutable = false;
             }
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+        staticFileServer.serve(filePath, filename, immutable, request, response);
     }
 }
\ No newline at end of file
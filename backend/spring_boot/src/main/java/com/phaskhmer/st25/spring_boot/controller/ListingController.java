@@ -1,22 +1,102 @@
 package com.phaskhmer.st25.spring_boot.controller;
-import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSearchResultDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.SearchIndexStatsDTO;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingExporter;
 import com.phaskhmer.st25.spring_boot.service.listing.ListingService;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingVersionRegistry;
+import com.phaskhmer.st25.spring_boot.service.search.ListingSearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/listings")
 public class ListingController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    // Deepest result a search may page to; every hit up to it is ranked in memory
+    private static final int MAX_SEARCH_RESULTS = 1000;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final ListingService listingService;
+    private final ListingSearchService listingSearchService;
+    private final ListingVersionRegistry listingVersionRegistry;
+    private final ListingExporter listingExporter;
 
-    public ListingController(ListingService listingService) {
+    public ListingController(ListingService listingService, ListingSearchService listingSearchService, ListingVersionRegistry listingVersionRegistry, ListingExporter listingExporter) {
         this.listingService = listingService;
+        this.listingSearchService = listingSearchService;
+        this.listingVersionRegistry = listingVersionRegistry;
+        this.listingExporter = listingExporter;
     }
 
+    /**
+     * Every listing (with tags and items) as newline-delimited JSON, streamed straight from a database cursor.
+     * Request: GET /api/v1/listings/export
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportListings() {
+        return ResponseEntity.ok()
+                .contentType(NDJSON)
+                .body(listingExporter::export);
+    }
+
+    /**
+     * Relevance-ranked search over listing titles, tags and item names, served from the in-memory index.
+     * Request: GET /api/v1/listings/search?name=phone&page=0&size=20
+     * Carries the catalog ETag; a matching If-None-Match gets 304 without running the query.
+     * Only the first 1000 results can be paged to; a page beyond them gets 400 Bad Request.
+     */
     @GetMapping("/search")
-    public List<Listing> searchListingsByName(@RequestParam("name") String name) {
-        return listingService.getListingsByName(name);
+    public ResponseEntity<?> searchListingsByName(
+            @RequestParam("name") String name,
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            WebRequest request
+    ) {
+        String etag = listingVersionRegistry.catalogETag();
+        if (request.checkNotModified(etag, listingVersionRegistry.catalogLastModified())) {
+            return null;
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int pageNumber = Math.max(page, 0);
+        if ((long) pageNumber * pageSize + pageSize > MAX_SEARCH_RESULTS) {
+            return new ResponseEntity<>("Only the first " + MAX_SEARCH_RESULTS + " search results can be paged to.",
+                    HttpStatus.BAD_REQUEST);
+        }
+        ListingSearchResultDTO result = listingService.searchListings(name, pageNumber, pageSize);
+        return ResponseEntity.ok().eTag(etag).body(result);
+    }
+
+    /**
+     * Rebuilds the search index from the database (e.g. after a bulk fix-up in SQL). Admins only.
+     * Request: POST /api/v1/listings/search/rebuild
+     */
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<SearchIndexStatsDTO> rebuildSearchIndex() {
+        return ResponseEntity.ok(listingService.rebuildSearchIndex());
+    }
+
+    /**
+     * Reloads the in-memory categories and listing statuses after they were changed in the database.
+     * Admins only.
+     * Request: POST /api/v1/listings/reference-data/refresh
+     */
+    @PostMapping("/reference-data/refresh")
+    public ResponseEntity<Void> refreshReferenceData() {
+        listingService.refreshReferenceData();
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Index size (listings, terms, postings) and p50/p99 latency of recent index lookups.
+     * Request: GET /api/v1/listings/search/stats
+     */
+    @GetMapping("/search/stats")
+    public ResponseEntity<SearchIndexStatsDTO> getSearchIndexStats() {
+        return ResponseEntity.ok(listingSearchService.stats());
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,28 @@
 package com.phaskhmer.st25.spring_boot.controller;
 
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCursorPageDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingFacetsDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSuggestionDTO;
+import com.phaskhmer.st25.spring_boot.service.search.ListingSearchService;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingFilter;
 import com.phaskhmer.st25.spring_boot.model.listing.Listing;
 import com.phaskhmer.st25.spring_boot.service.listing.ListingService;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingVersionRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -19,6 +31,11 @@ import java.util.Optional;
 public class PublicListingController {
 
     private final ListingService listingService;
+    private final ListingSearchService listingSearchService;
+    private final ListingVersionRegistry listingVersionRegistry;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
 
     /**
      * Endpoint to fetch all listings with pagination and sorting (newest first).
@@ -28,17 +45,102 @@ public class PublicListingController {
      * GET /api/public/listings?page=0&size=20 -> Gets the first page with 20 items
      * GET /api/public/listings?page=1&size=15 -> Gets the second page with 15 items
      *
-     * @param page The page number requested (defaults to 0).
-     * @param size The number of items per page (defaults to 10).
-     * @return A ResponseEntity containing a Page of Listing objects.
+     * Cursor mode (used by the infinite feed, no OFFSET scan and no total count):
+     * GET /api/public/listings?after=&size=20 -> Gets the first slice
+     * GET /api/public/listings?after=djE6MTIz&size=20 -> Gets the slice after the given cursor
+     *
+     * Filtered mode (response also carries facet counts per category and price bucket):
+     * GET /api/public/listings?categoryId=3&minPrice=5&maxPrice=20&tag=vintage
+     *
+     * Every mode carries the catalog ETag (changes whenever any listing is written). A request whose
+     * If-None-Match still matches gets 304 Not Modified without touching the database.
+     *
+     * @param page  The page number requested (defaults to 0). Ignored in cursor mode.
+     * @param size  The number of items per page (defaults to 10).
+     * @param after The opaque cursor returned as nextCursor by the previous slice. Its presence enables cursor mode.
+     * @return A Page of Listing objects, a ListingCursorPageDTO in cursor mode, or a ListingFilterPageDTO when filtered.
      */
     @GetMapping
-    public ResponseEntity<Page<Listing>> getAllListings(
+    public ResponseEntity<?> getAllListings(
             @RequestParam(name = "page", defaultValue = "0") int page,
-            @RequestParam(name = "size", defaultValue = "10") int size
+            @RequestParam(name = "size", defaultValue = "10") int size,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "categoryId", required = false) Long categoryId,
+            @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
+            @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
+            @RequestParam(name = "tag", required = false) String tag,
+            WebRequest request
     ) {
+        // Read the version before the data, so a concurrent write can only make the tag too old, never too new
+        String etag = listingVersionRegistry.catalogETag();
+        if (request.checkNotModified(etag, listingVersionRegistry.catalogLastModified())) {
+            return null;
+        }
+
+        ListingFilter filter = new ListingFilter(categoryId, minPrice, maxPrice, tag);
+        if (!filter.isEmpty()) {
+            return ResponseEntity.ok().eTag(etag).body(listingService.getFilteredPublicListings(filter, page, clampSize(size)));
+        }
+
+        if (after != null) {
+            try {
+                ListingCursorPageDTO<Listing> slice = listingService.getPublicListingsAfter(after, clampSize(size));
+                return ResponseEntity.ok().eTag(etag).body(slice);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+        }
+
         Page<Listing> listingsPage = listingService.getPublicListings(page, size);
-        return ResponseEntity.ok(listingsPage);
+        return ResponseEntity.ok().eTag(etag).body(listingsPage);
+    }
+
+    /**
+     * Endpoint to fetch the feed as flat listing cards instead of full Listing entities.
+     * Each card carries the thumbnail, item count, min price, category name and status name.
+     *
+     * Example Request:
+     * GET /api/public/listings/cards?page=0&size=20
+     *
+     * @param page The page number requested (defaults to 0).
+     * @param size The number of cards per page (defaults to 10).
+     * @return A ResponseEntity containing a Page of ListingCardDTO objects.
+     */
+    @GetMapping("/cards")
+    public ResponseEntity<Page<ListingCardDTO>> getListingCards(
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "10") int size
+    ) {
+        return ResponseEntity.ok(listingService.getPublicListingCards(page, clampSize(size)));
+    }
+
+    /**
+     * Endpoint to fetch the facet counts (listings per category and per price bucket) on their own.
+     *
+     * Example Request:
+     * GET /api/public/listings/facets
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<ListingFacetsDTO> getListingFacets() {
+        return ResponseEntity.ok(listingService.getListingFacets());
+    }
+
+    /**
+     * Endpoint for search-box autocomplete. Answered from an in-memory trie of titles, most viewed first.
+     *
+     * Example Request:
+     * GET /api/public/listings/suggest?prefix=iph&limit=8
+     *
+     * @param prefix What the user has typed so far.
+     * @param limit  The maximum number of suggestions (defaults to 8).
+     * @return Listing ids and titles only.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ListingSuggestionDTO>> suggestListings(
+            @RequestParam(name = "prefix") String prefix,
+            @RequestParam(name = "limit", defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok(listingSearchService.suggest(prefix, Math.min(limit, MAX_SUGGESTIONS)));
     }
 
     /**
@@ -47,15 +149,29 @@ public class PublicListingController {
      * Example Request:
      * GET /api/public/listings/1
      *
+     * The response carries a strong ETag built from the listing's version stamp. A matching
+     * If-None-Match gets 304 Not Modified before the cache or the database is consulted.
+     *
      * @param id The ID of the listing to retrieve.
-     * @return A ResponseEntity containing the Listing object if found, or 404 Not Found.
+     * @return A ResponseEntity containing the Listing JSON if found, 304 Not Modified, or 404 Not Found.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Listing> getListingById(@PathVariable Integer id) {
-        Optional<Listing> listing = listingService.getPublicListingById(id);
-        return listing.map(ResponseEntity::ok)
+    public ResponseEntity<byte[]> getListingById(@PathVariable Integer id, WebRequest request) {
+        Long listingId = id.longValue();
+        String etag = listingVersionRegistry.listingETag(listingId);
+        if (request.checkNotModified(etag, listingVersionRegistry.listingLastModified(listingId))) {
+            return null;
+        }
+
+        Optional<byte[]> listingJson = listingService.getPublicListingDetailJson(listingId);
+        return listingJson.map(json -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .eTag(etag)
+                        .body(json))
                 .orElse(ResponseEntity.notFound().build());
     }
 
-    
+    private int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
 }
\ No newline at end of file
@@ -1,11 +1,11 @@
 package com.phaskhmer.st25.spring_boot.controller.payment;
 
-import com.phaskhmer.st25.spring_boot.model.cart.Cart;
-import com.phaskhmer.st25.spring_boot.model.order.Order;
-import com.phaskhmer.st25.spring_boot.model.order.OrderItem;
-import com.phaskhmer.st25.spring_boot.model.order.OrderStatus;
-import com.phaskhmer.st25.spring_boot.repository.CartRepository;
-import com.phaskhmer.st25.spring_boot.repository.OrderRepository;
+import com.phaskhmer.st25.spring_boot.dto.ItemSummaryDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartLineDTO;
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.OrderBatchWriter;
+import com.phaskhmer.st25.spring_boot.service.CartService;
 import com.phaskhmer.st25.spring_boot.service.StripeService;
 import com.stripe.exception.StripeException;
 import com.stripe.model.checkout.Session;
@@ -18,7 +18,9 @@ import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -26,13 +28,13 @@ import java.util.stream.Collectors;
 public class CheckoutController {
 
     private final StripeService stripeService;
-    private final CartRepository cartRepository;
-    private final OrderRepository orderRepository;
+    private final OrderBatchWriter orderBatchWriter;
+    private final CartService cartService;
 
-    public CheckoutController(StripeService stripeService, CartRepository cartRepository, OrderRepository orderRepository) {
+    public CheckoutController(StripeService stripeService, OrderBatchWriter orderBatchWriter, CartService cartService) {
         this.stripeService = stripeService;
-        this.cartRepository = cartRepository;
-        this.orderRepository = orderRepository;
+        this.orderBatchWriter = orderBatchWriter;
+        this.cartService = cartService;
     }
 
     // DTO for response to Flutter
@@ -51,66 +53,73 @@ public class CheckoutController {
 
     /**
      * Endpoint to initiate the Stripe Checkout flow.
-     * Creates a separate Order entity for each unique item in the cart.
+     * Creates a separate Order for each unique item in the cart, written in JDBC batches with ids from a
+     * pooled block, so the number of statements does not grow with the cart.
+     * The cart's price snapshots are checked against the items table (locked until the orders are written)
+     * first: an item that is gone or has no price, or a snapshot that no longer matches, gets 409 Conflict
+     * with the item ids, and the cart is repriced so the customer can review it and retry.
      * @param customerId The ID of the customer initiating checkout.
-     * @return Stripe Session URL and Session ID.
+     * @return Stripe Session URL and Session ID, or 409 Conflict.
      */
     @PostMapping("/{customerId}")
     @Transactional
     public ResponseEntity<?> initiateCheckout(@PathVariable Long customerId) {
 
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("Cart not found for customer: " + customerId));
+        // Read from the in-memory cart: its lines carry the price snapshot the customer saw
+        CartDTO cart = cartService.getOrCreateCart(customerId);
 
         if (cart.getItems().isEmpty()) {
             return ResponseEntity.badRequest().body("Cart is empty.");
         }
 
-        // List to hold all orders created in this transaction
-        List<Order> newOrders = new ArrayList<>();
-
-        // List to hold Stripe line items for the single checkout session
-        List<SessionCreateParams.LineItem> stripeLineItems = new ArrayList<>();
+        List<Long> itemIds = new ArrayList<>(cart.getItems().size());
+        for (CartLineDTO line : cart.getItems()) {
+            itemIds.add(line.getItem().getId());
+        }
+        Map<Long, BigDecimal> prices = orderBatchWriter.lockPrices(itemIds);
+        List<Long> unavailable = new ArrayList<>();
+        Map<Long, BigDecimal> changed = new LinkedHashMap<>();
+        for (CartLineDTO line : cart.getItems()) {
+            Long itemId = line.getItem().getId();
+            BigDecimal price = prices.get(itemId);
+            BigDecimal snapshot = line.getItem().getPrice();
+            if (price == null) {
+                unavailable.add(itemId);
+            } else if (snapshot == null || snapshot.compareTo(price) != 0) {
+                changed.put(itemId, price);
+            }
+        }
+        if (!unavailable.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "error", "Some items in the cart are no longer available.", "itemIds", unavailable));
+        }
+        if (!changed.isEmpty()) {
+            cartService.repriceCart(customerId, changed);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "error", "Some prices in the cart have changed.", "itemIds", new ArrayList<>(changed.keySet())));
+        }
 
         // -----------------------------------------------------------------
-        // 1. ITERATE OVER CART ITEMS TO CREATE SEPARATE ORDERS
+        // 1. CREATE ONE PENDING ORDER PER CART LINE, IN BATCHES
         // -----------------------------------------------------------------
 
-        for (var cartItem : cart.getItems()) {
-
-            // Calculate the total amount for *this single item*
-            BigDecimal itemTotalAmount = cartItem.getItem().getPrice()
-                    .multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-
-            // 1.1. Create a PENDING Order for this single item
-            Order pendingOrder = new Order();
-            pendingOrder.setCustomer(cart.getCustomer());
-            pendingOrder.setTotalAmount(itemTotalAmount);
-            pendingOrder.setStatus(OrderStatus.PENDING);
-
-            // 1.2. Create the single OrderItem for this order
-            OrderItem orderItem = new OrderItem();
-            orderItem.setOrder(pendingOrder);
-            orderItem.setItem(cartItem.getItem());
-            orderItem.setQuantity(cartItem.getQuantity());
-            orderItem.setUnitPrice(cartItem.getItem().getPrice());
-
-            // Link the OrderItem back to the Order
-            List<OrderItem> orderItems = new ArrayList<>();
-            orderItems.add(orderItem);
-            pendingOrder.setItems(orderItems);
-
-            // 1.3. Save the single item order
-            Order savedOrder = orderRepository.save(pendingOrder);
-            newOrders.add(savedOrder);
+        List<OrderBatchWriter.OrderLine> orderLines = new ArrayList<>(cart.getItems().size());
+        for (CartLineDTO line : cart.getItems()) {
+            orderLines.add(new OrderBatchWriter.OrderLine(line.getItem().getId(), line.getQuantity(), line.getItem().getPrice()));
+        }
+        List<Long> createdOrderIds = orderBatchWriter.insertPending(customerId, orderLines);
 
-            // 1.4. Prepare the corresponding Stripe Line Item
+        // List to hold Stripe line items for the single checkout session
+        List<SessionCreateParams.LineItem> stripeLineItems = new ArrayList<>(orderLines.size());
+        for (int i = 0; i < cart.getItems().size(); i++) {
+            ItemSummaryDTO item = cart.getItems().get(i).getItem();
             // We use the Order ID in the metadata to link the payment back to the order(s)
             stripeLineItems.add(
                     stripeService.createStripeLineItem(
-                            cartItem.getItem(),
-                            cartItem.getQuantity(),
-                            savedOrder.getId()
+                            Item.builder().id(item.getId()).name(item.getName()).price(item.getPrice())
+                                    .imageUrl(item.getImageUrl()).build(),
+                            cart.getItems().get(i).getQuantity(),
+                            createdOrderIds.get(i)
                     )
             );
         }
@@ -130,8 +139,8 @@ public class CheckoutController {
 
             // We need a composite identifier for the success/cancel URLs,
             // or we use the first order's ID, or we rely purely on the webhook.
-            String metaDataOrderId = newOrders.stream()
-                    .map(order -> String.valueOf(order.getId()))
+            String metaDataOrderId = createdOrderIds.stream()
+                    .map(String::valueOf)
                     .collect(Collectors.joining("_"));
 
             Session session = stripeService.createCheckoutSessionFromLineItems(
@@ -144,12 +153,7 @@ public class CheckoutController {
             // 3. Update ALL Orders with the SAME Stripe Session ID
             // -----------------------------------------------------------------
 
-            List<Long> createdOrderIds = new ArrayList<>();
-            for (Order order : newOrders) {
-                order.setStripeSessionId(session.getId());
-                orderRepository.save(order);
-                createdOrderIds.add(order.getId());
-            }
+            orderBatchWriter.attachSession(createdOrderIds, session.getId());
 
             // 4. Return the URL and ID to Flutter
             return ResponseEntity.ok(new CheckoutResponse(
@@ -161,7 +165,7 @@ public class CheckoutController {
         } catch (StripeException e) {
             System.err.println("Stripe Error: " + e.getMessage());
             // Optional: Handle cleanup if Stripe fails (delete the pending orders)
-            // orderRepository.deleteAll(newOrders);
+            // orderRepository.deleteAllById(createdOrderIds);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Collections.singletonMap("error", "Stripe payment initiation failed."));
         }
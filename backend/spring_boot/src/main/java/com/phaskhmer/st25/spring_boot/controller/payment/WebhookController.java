@@ -2,8 +2,8 @@ package com.phaskhmer.st25.spring_boot.controller.payment;
 
 import com.phaskhmer.st25.spring_boot.model.order.Order;
 import com.phaskhmer.st25.spring_boot.model.order.OrderStatus;
-import com.phaskhmer.st25.spring_boot.repository.CartRepository;
 import com.phaskhmer.st25.spring_boot.repository.OrderRepository;
+import com.phaskhmer.st25.spring_boot.service.CartService;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import com.stripe.model.StripeObject;
@@ -26,11 +26,11 @@ public class WebhookController {
     private String webhookSecret;
 
     private final OrderRepository orderRepository;
-    private final CartRepository cartRepository;
+    private final CartService cartService;
 
-    public WebhookController(OrderRepository orderRepository, CartRepository cartRepository) {
+    public WebhookController(OrderRepository orderRepository, CartService cartService) {
         this.orderRepository = orderRepository;
-        this.cartRepository = cartRepository;
+        this.cartService = cartService;
     }
 
     @PostMapping
@@ -106,11 +106,8 @@ public class WebhookController {
 
             // 4. Clear the customer's cart
             // This is done once, after all orders have been processed.
-            cartRepository.findByCustomerId(customerId).ifPresent(cart -> {
-                cart.getItems().clear();
-                cartRepository.save(cart);
-                System.out.println("Cart cleared for customer: " + customerId);
-            });
+            cartService.clearCart(customerId);
+            System.out.println("Cart cleared for customer: " + customerId);
 
             // TODO: Deduct inventory (stock management)
             // TODO: Send confirmation email
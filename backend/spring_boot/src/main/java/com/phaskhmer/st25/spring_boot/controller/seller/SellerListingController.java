@@ -1,9 +1,19 @@
 package com.phaskhmer.st25.spring_boot.controller.seller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -11,7 +21,10 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping; // Added GetMapping
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -21,10 +34,17 @@ import org.springframework.web.multipart.MultipartFile;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.phaskhmer.st25.spring_boot.dto.listing.ItemMetadataDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ItemPatchDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingFromUploadsRequestDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingImportReportDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingPatchDTO;
+import com.phaskhmer.st25.spring_boot.dto.seller.SellerListingSummaryDTO;
 import com.phaskhmer.st25.spring_boot.model.listing.Item;
 import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+import com.phaskhmer.st25.spring_boot.service.listing.ListingImportService;
 import com.phaskhmer.st25.spring_boot.service.listing.ListingService;
 import com.phaskhmer.st25.spring_boot.service.storage.FileStorageService;
+import com.phaskhmer.st25.spring_boot.service.storage.UploadSessionService;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -36,6 +56,10 @@ public class SellerListingController {
     private final FileStorageService fileStorageService;
     private final ListingService listingService;
     private final ObjectMapper objectMapper;
+    private final ListingImportService listingImportService;
+    private final UploadSessionService uploadSessionService;
+
+    private static final int MAX_PAGE_SIZE = 100;
 
     /**
      * Helper method to extract the principal ID (Customer ID) from the Security Context.
@@ -91,10 +115,194 @@ public class SellerListingController {
         return ResponseEntity.ok(listings);
     }
 
+    /**
+     * Endpoint for the seller dashboard: one page of the seller's listings as compact summaries
+     * (item count and price range instead of the full item list).
+     *
+     * Example Requests:
+     * GET /api/seller/listings/summary -> First 20 listings, newest first
+     * GET /api/seller/listings/summary?page=2&size=50&sort=title
+     *
+     * @param sort One of id, title, status or newest (defaults to newest).
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<?> getMyListingSummaries(
+            @RequestParam(name = "page", defaultValue = "0") int page,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            @RequestParam(name = "sort", defaultValue = "newest") String sort
+    ) {
+        Long sellerId = getCurrentSellerId();
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        try {
+            Page<SellerListingSummaryDTO> summaries =
+                    listingService.getSellerListingSummaries(sellerId, Math.max(page, 0), pageSize, sort);
+            return ResponseEntity.ok(summaries);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // =================================================================
+    // POST: Bulk import
+    // =================================================================
+
+    /**
+     * Endpoint to import many listings at once.
+     * Request: POST /api/seller/listings/import (multipart)
+     *   listings: NDJSON file, one listing per line, e.g.
+     *     {"title":"Silk scarf","categoryId":3,"image":"scarf.jpg","tags":["silk"],"items":[{"name":"Red","price":12.5,"image":"scarf-red.jpg"}]}
+     *   images:   optional zip holding the files named by the image fields
+     *
+     * Bad rows are reported with their line number and skipped; the rest are inserted.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importListings(
+            @RequestPart("listings") MultipartFile listingsFile,
+            @RequestPart(name = "images", required = false) MultipartFile imagesArchive
+    ) {
+        Long sellerId = getCurrentSellerId();
+        Path archiveCopy = null;
+        try {
+            ZipFile images = null;
+            if (imagesArchive != null && !imagesArchive.isEmpty()) {
+                // ZipFile needs random access, so the archive is spooled to a temp file first
+                archiveCopy = Files.createTempFile("listing-import-", ".zip");
+                imagesArchive.transferTo(archiveCopy);
+                images = new ZipFile(archiveCopy.toFile());
+            }
+            try (InputStream rows = listingsFile.getInputStream()) {
+                ListingImportReportDTO report = listingImportService.importListings(sellerId, rows, images);
+                return ResponseEntity.ok(report);
+            } finally {
+                if (images != null) {
+                    images.close();
+                }
+            }
+        } catch (ZipException e) {
+            return new ResponseEntity<>("The images part is not a valid zip archive.", HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            System.err.println("Error reading import upload: " + e.getMessage());
+            return new ResponseEntity<>("Internal server error during processing.", HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            if (archiveCopy != null) {
+                archiveCopy.toFile().delete();
+            }
+        }
+    }
+
+    // =================================================================
+    // PATCH: Edit a Listing in place
+    // =================================================================
+
+    /**
+     * Endpoint to change some fields of a listing; fields left out stay as they are.
+     * Request: PATCH /api/seller/listings/{id}
+     *   {"title":"Silk scarf (large)","statusId":2,"tags":["silk","scarf"],"thumbnailUploadId":"9b1d..."}
+     */
+    @PatchMapping("/{listingId}")
+    public ResponseEntity<?> patchListing(@PathVariable Long listingId, @RequestBody ListingPatchDTO patch) {
+        Long sellerId = getCurrentSellerId();
+        try {
+            String thumbnail = patch.getThumbnailUploadId() == null ? null
+                    : uploadSessionService.storedFileNames(sellerId, List.of(patch.getThumbnailUploadId()))
+                            .get(patch.getThumbnailUploadId());
+            Optional<Listing> updated = listingService.updateListing(sellerId, listingId, patch.getTitle(), thumbnail,
+                    patch.getCategoryId(), patch.getStatusId(), patch.getTags());
+            if (updated.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (patch.getThumbnailUploadId() != null) {
+                uploadSessionService.consume(List.of(patch.getThumbnailUploadId()));
+            }
+            return ResponseEntity.ok(updated.get());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * Endpoint to change the name, price or image of one item; fields left out stay as they are.
+     * Request: PATCH /api/seller/listings/{id}/items/{itemId} {"price":14.00,"imageUploadId":"5e0c..."}
+     */
+    @PatchMapping("/{listingId}/items/{itemId}")
+    public ResponseEntity<?> patchItem(@PathVariable Long listingId, @PathVariable Long itemId,
+                                       @RequestBody ItemPatchDTO patch) {
+        Long sellerId = getCurrentSellerId();
+        try {
+            String image = patch.getImageUploadId() == null ? null
+                    : uploadSessionService.storedFileNames(sellerId, List.of(patch.getImageUploadId()))
+                            .get(patch.getImageUploadId());
+            Optional<Listing> updated = listingService.updateItem(sellerId, listingId, itemId, patch.getName(),
+                    patch.getPrice(), image);
+            if (updated.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (patch.getImageUploadId() != null) {
+                uploadSessionService.consume(List.of(patch.getImageUploadId()));
+            }
+            return ResponseEntity.ok(updated.get());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     // =================================================================
     // POST: Create a new Listing
     // =================================================================
 
+    /**
+     * Endpoint to create a listing from images already sent through the resumable upload API.
+     * Request: POST /api/seller/listings (application/json)
+     *   {"title":"Silk scarf","categoryId":3,"statusId":1,"thumbnailUploadId":"9b1d...",
+     *    "items":[{"name":"Red","price":12.5,"imageUploadId":"5e0c..."}]}
+     * The listing is created with the given statusId (e.g. 1 for active), which must exist.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> postListingFromUploads(@RequestBody ListingFromUploadsRequestDTO request) {
+        Long sellerId = getCurrentSellerId();
+
+        if (request.getTitle() == null || request.getTitle().isBlank() || request.getStatusId() == null) {
+            return new ResponseEntity<>("A title and a statusId are required.", HttpStatus.BAD_REQUEST);
+        }
+        if (request.getThumbnailUploadId() == null || request.getItems() == null || request.getItems().isEmpty()) {
+            return new ResponseEntity<>("A thumbnail and at least one item are required.", HttpStatus.BAD_REQUEST);
+        }
+        Set<String> uploadIds = new LinkedHashSet<>();
+        uploadIds.add(request.getThumbnailUploadId());
+        for (ListingFromUploadsRequestDTO.ItemDTO item : request.getItems()) {
+            if (item.getName() == null || item.getName().isBlank() || item.getPrice() == null
+                    || item.getImageUploadId() == null) {
+                return new ResponseEntity<>("Every item needs a name, a price and an imageUploadId.", HttpStatus.BAD_REQUEST);
+            }
+            uploadIds.add(item.getImageUploadId());
+        }
+
+        try {
+            Map<String, String> fileNames = uploadSessionService.storedFileNames(sellerId, uploadIds);
+            List<Item> finalItems = new ArrayList<>();
+            for (ListingFromUploadsRequestDTO.ItemDTO item : request.getItems()) {
+                finalItems.add(Item.builder()
+                        .name(item.getName())
+                        .price(item.getPrice())
+                        .imageUrl(fileNames.get(item.getImageUploadId()))
+                        .build());
+            }
+
+            Listing createdListing = listingService.createFullListing(
+                    sellerId,
+                    request.getTitle(),
+                    fileNames.get(request.getThumbnailUploadId()),
+                    finalItems,
+                    request.getCategoryId(),
+                    request.getStatusId()
+            );
+            uploadSessionService.consume(uploadIds);
+            return new ResponseEntity<>(createdListing, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> postFullListing(
             @RequestParam("title") String listingTitle,
@@ -109,32 +317,42 @@ public class SellerListingController {
             return new ResponseEntity<>("Item image count mismatch.", HttpStatus.BAD_REQUEST);
         }
 
-        String savedThumbnailName = null;
-        List<String> savedItemImageNames = new ArrayList<>();
         Long sellerId = getCurrentSellerId();
-        System.out.println("DEBUG: Seller ID extracted from JWT: " + sellerId);
 
+        // A. Parse and validate the item details before anything touches the disk
+        List<ItemMetadataDTO> itemMetadata;
         try {
-            // A. Store Listing Thumbnail
-            savedThumbnailName = fileStorageService.storeFile(listingThumbnail);
-
-            // B. Store Item Images
-            for (MultipartFile imageFile : itemImages) {
-                String savedFileName = fileStorageService.storeFile(imageFile);
-                savedItemImageNames.add(savedFileName);
-            }
-
-            // C. Parse the Item Details JSON String
-            List<ItemMetadataDTO> itemMetadata = objectMapper.readValue(
+            itemMetadata = objectMapper.readValue(
                     itemDetailsJson,
                     new TypeReference<List<ItemMetadataDTO>>() {}
             );
+        } catch (IOException e) {
+            return new ResponseEntity<>("item_details is not valid JSON.", HttpStatus.BAD_REQUEST);
+        }
 
-            if (itemMetadata.size() != itemCount) {
-                return new ResponseEntity<>("Item metadata count mismatch.", HttpStatus.BAD_REQUEST);
+        if (itemMetadata.size() != itemCount) {
+            return new ResponseEntity<>("Item metadata count mismatch.", HttpStatus.BAD_REQUEST);
+        }
+        for (ItemMetadataDTO metadata : itemMetadata) {
+            if (metadata.getName() == null || metadata.getName().isBlank() || metadata.getPrice() == null) {
+                return new ResponseEntity<>("Every item needs a name and a price.", HttpStatus.BAD_REQUEST);
             }
+        }
 
-            // D. Combine Metadata and File Paths into Final Item Models
+        // B. Store the thumbnail and all item images in parallel (index 0 is the thumbnail)
+        List<MultipartFile> uploads = new ArrayList<>(itemImages.size() + 1);
+        uploads.add(listingThumbnail);
+        uploads.addAll(itemImages);
+        List<String> savedFileNames;
+        try {
+            savedFileNames = fileStorageService.storeAll(uploads);
+        } catch (RuntimeException e) {
+            System.err.println("Error storing listing images: " + e.getMessage());
+            return new ResponseEntity<>("Internal server error during processing.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        try {
+            // C. Combine Metadata and File Paths into Final Item Models
             List<Item> finalItems = new ArrayList<>();
             for (int i = 0; i < itemMetadata.size(); i++) {
                 ItemMetadataDTO metadata = itemMetadata.get(i);
@@ -142,30 +360,32 @@ public class SellerListingController {
                 Item finalItem = Item.builder()
                         .name(metadata.getName())
                         .price(metadata.getPrice())
-                        .imageUrl(savedItemImageNames.get(i))
+                        .imageUrl(savedFileNames.get(i + 1))
                         .build();
 
                 finalItems.add(finalItem);
             }
 
-            // E. Call the Service to persist the Listing and Items
+            // D. Call the Service to persist the Listing and Items
             Listing createdListing = listingService.createFullListing(
                     sellerId,
                     listingTitle,
-                    savedThumbnailName,
+                    savedFileNames.get(0),
                     finalItems,
                     categoryId,
                     statusId
             );
 
-            // F. Return the created Listing object
+            // E. Return the created Listing object
             return new ResponseEntity<>(createdListing, HttpStatus.CREATED);
 
         } catch (IllegalArgumentException e) {
+            fileStorageService.deleteFiles(savedFileNames);
             return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
-        } catch (IOException e) {
-            System.err.println("Error parsing JSON or handling files: " + e.getMessage());
-            return new ResponseEntity<>("Internal server error during processing.", HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (RuntimeException e) {
+            // Nothing references the stored files if the listing was not saved
+            fileStorageService.deleteFiles(savedFileNames);
+            throw e;
         }
     }
 }
\ No newline at end of file
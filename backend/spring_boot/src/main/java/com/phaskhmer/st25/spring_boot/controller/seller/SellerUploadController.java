@@ -0,0 +1,151 @@
+package com.phaskhmer.st25.spring_boot.controller.seller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.phaskhmer.st25.spring_boot.dto.upload.UploadCreateRequestDTO;
+import com.phaskhmer.st25.spring_boot.dto.upload.UploadStatusDTO;
+import com.phaskhmer.st25.spring_boot.model.upload.UploadSession;
+import com.phaskhmer.st25.spring_boot.service.storage.UploadSessionService;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Resumable, chunked image uploads for sellers on unreliable connections.
+ *
+ * 1. POST /api/seller/uploads {"fileName":"red.jpg","size":3145728} -> 201, Location and the upload id
+ * 2. PATCH /api/seller/uploads/{id} with header Upload-Offset: 0 and the raw bytes of a chunk as the body
+ *    -> 200 with the new Upload-Offset; repeat until it equals the size
+ * 3. After a dropped connection: HEAD /api/seller/uploads/{id} -> Upload-Offset, and continue from there
+ *
+ * The finished upload's id is then used in POST /api/seller/listings (JSON).
+ */
+@RestController
+@RequestMapping("/api/seller/uploads")
+@RequiredArgsConstructor
+public class SellerUploadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SellerUploadController.class);
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final UploadSessionService uploadSessionService;
+
+    // Helper to get the current user's ID from security context
+    private Long getCurrentSellerId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        String userIdString;
+        if (principal instanceof UserDetails) {
+            userIdString = ((UserDetails) principal).getUsername();
+        } else {
+            userIdString = principal.toString();
+        }
+        return Long.valueOf(userIdString);
+    }
+
+    /**
+     * Opens an upload.
+     * Request: POST /api/seller/uploads {"fileName":"red.jpg","size":3145728}
+     */
+    @PostMapping
+    public ResponseEntity<?> createUpload(@RequestBody UploadCreateRequestDTO request) {
+        if (request.getSize() == null) {
+            return new ResponseEntity<>("size is required.", HttpStatus.BAD_REQUEST);
+        }
+        try {
+            UploadSession session = uploadSessionService.create(getCurrentSellerId(), request.getFileName(), request.getSize());
+            return ResponseEntity.created(URI.create("/api/seller/uploads/" + session.getId()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, Long.toString(session.getTotalSize()))
+                    .body(toStatus(session, 0));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * How far an upload got, as headers only.
+     * Request: HEAD /api/seller/uploads/{id}
+     */
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getUploadOffset(@PathVariable String uploadId) {
+        return uploadSessionService.find(getCurrentSellerId(), uploadId)
+                .map(session -> ResponseEntity.ok()
+                        .header(UPLOAD_OFFSET, Long.toString(uploadSessionService.offsetOf(session)))
+                        .header(UPLOAD_LENGTH, Long.toString(session.getTotalSize()))
+                        .header("Cache-Control", "no-store")
+                        .<Void>build())
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * How far an upload got, and the stored file name once it is complete.
+     * Request: GET /api/seller/uploads/{id}
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadStatusDTO> getUpload(@PathVariable String uploadId) {
+        return uploadSessionService.find(getCurrentSellerId(), uploadId)
+                .map(session -> ResponseEntity.ok(toStatus(session, uploadSessionService.offsetOf(session))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Appends one chunk. The body is read as a raw stream (any content type, e.g. application/offset+octet-stream).
+     * Request: PATCH /api/seller/uploads/{id} with header Upload-Offset: 1048576
+     *
+     * 409 when Upload-Offset is not the current offset (ask with HEAD and resend from there).
+     */
+    @PatchMapping("/{uploadId}")
+    public ResponseEntity<?> appendChunk(
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request
+    ) {
+        UploadSession session = uploadSessionService.find(getCurrentSellerId(), uploadId).orElse(null);
+        if (session == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream chunk = request.getInputStream()) {
+            session = uploadSessionService.append(session, offset, chunk);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, Long.toString(uploadSessionService.offsetOf(session)))
+                    .body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            // Usually the client went away mid-chunk; what arrived is kept and HEAD reports it
+            logger.debug("Upload {} interrupted: {}", uploadId, e.getMessage());
+            return new ResponseEntity<>("Upload interrupted; resume from Upload-Offset.", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        long received = uploadSessionService.offsetOf(session);
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, Long.toString(received))
+                .body(toStatus(session, received));
+    }
+
+    private static UploadStatusDTO toStatus(UploadSession session, long offset) {
+        return new UploadStatusDTO(session.getId(), offset, session.getTotalSize(),
+                session.getStoredFileName() != null, session.getStoredFileName());
+    }
+}
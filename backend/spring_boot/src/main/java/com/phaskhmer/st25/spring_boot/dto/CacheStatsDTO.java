@@ -0,0 +1,29 @@
+package com.phaskhmer.st25.spring_boot.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CacheStatsDTO {
+    private String name;
+    // Entries, or bytes for byte-budgeted caches (then entries is set too)
+    private long size;
+    private long capacity;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long entries;
+    // Candidates turned away by frequency-aware admission
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long rejections;
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,22 @@
+package com.phaskhmer.st25.spring_boot.dto.cart;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The customer's cart as served by /api/cart. Same shape as the Cart entity used to be, plus the total
+ * and the version (also the ETag).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDTO {
+    private Long id;
+    private List<CartLineDTO> items;
+    private BigDecimal totalPrice;
+    private long version;
+}
@@ -0,0 +1,23 @@
+package com.phaskhmer.st25.spring_boot.dto.cart;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a PATCH /api/cart changed: the lines added or changed, the items removed and the new totals.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartDeltaDTO {
+    // Also sent as the ETag; pass it back in If-Match to make the next change conditional
+    private long version;
+    private List<CartLineDTO> changed;
+    private List<Long> removedItemIds;
+    private int itemCount;
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,16 @@
+package com.phaskhmer.st25.spring_boot.dto.cart;
+
+import com.phaskhmer.st25.spring_boot.dto.ItemSummaryDTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLineDTO {
+    private Long id;
+    private ItemSummaryDTO item;
+    private int quantity;
+}
@@ -0,0 +1,22 @@
+package com.phaskhmer.st25.spring_boot.dto.cart;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Changes to apply to the cart in one go, in order; either all of them are applied or none.
+ */
+@Data
+public class CartPatchDTO {
+
+    private List<Operation> operations;
+
+    @Data
+    public static class Operation {
+        // "add" (to the quantity), "set" (the quantity; 0 removes) or "remove"
+        private String op;
+        private Long itemId;
+        private Integer quantity;
+    }
+}
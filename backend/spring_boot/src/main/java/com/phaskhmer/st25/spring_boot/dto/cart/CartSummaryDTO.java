@@ -0,0 +1,35 @@
+package com.phaskhmer.st25.spring_boot.dto.cart;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Precomputed totals of a cart (GET /api/cart/summary), priced from the per-line price snapshots.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryDTO {
+    private Long cartId;
+    private long version;
+    private int lineCount;
+    // Sum of the quantities; what the cart badge shows
+    private int itemCount;
+    private BigDecimal subtotal;
+    // One group per seller, in the order their first item was added
+    private List<SellerGroup> sellers;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SellerGroup {
+        private Long sellerId;
+        private List<Long> itemIds;
+        private int itemCount;
+        private BigDecimal subtotal;
+    }
+}
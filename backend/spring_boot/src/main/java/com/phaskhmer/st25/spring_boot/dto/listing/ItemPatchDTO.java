@@ -0,0 +1,19 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * Fields to change on an item; anything left null stays as it is.
+ */
+@Data
+public class ItemPatchDTO {
+
+    private String name;
+
+    private BigDecimal price;
+
+    // A finished upload from /api/seller/uploads that becomes the new item image
+    private String imageUploadId;
+}
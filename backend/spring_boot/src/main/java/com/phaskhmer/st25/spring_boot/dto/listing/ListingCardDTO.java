@@ -0,0 +1,25 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flat read model for a listing card in the public feed.
+ * Built directly by a JPQL constructor projection, so no entity graph is loaded or serialized.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListingCardDTO {
+    private Long id;
+    private String title;
+    private String image;
+    private Long categoryId;
+    private String categoryName;
+    private String statusName;
+    private long itemCount;
+    private BigDecimal minPrice;
+}
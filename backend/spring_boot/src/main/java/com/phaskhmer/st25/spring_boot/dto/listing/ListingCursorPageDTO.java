@@ -0,0 +1,19 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * One slice of the public listing feed in cursor (keyset) mode.
+ * No total count is computed; pass {@code nextCursor} back as {@code after} to get the next slice.
+ */
+@Data
+@AllArgsConstructor
+public class ListingCursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean last;
+}
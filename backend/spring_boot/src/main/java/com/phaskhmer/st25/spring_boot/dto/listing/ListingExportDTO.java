@@ -0,0 +1,35 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of the NDJSON listing export. The scalar columns come from a single streamed query;
+ * tags and items are attached per chunk.
+ */
+@Data
+@NoArgsConstructor
+public class ListingExportDTO {
+    private Long id;
+    private String title;
+    private String image;
+    private Long categoryId;
+    private String categoryName;
+    private String status;
+    private Long sellerId;
+    private List<String> tags = new ArrayList<>();
+    private List<ItemDTO> items = new ArrayList<>();
+
+    public ListingExportDTO(Long id, String title, String image, Long categoryId, String categoryName, String status, Long sellerId) {
+        this.id = id;
+        this.title = title;
+        this.image = image;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.status = status;
+        this.sellerId = sellerId;
+    }
+}
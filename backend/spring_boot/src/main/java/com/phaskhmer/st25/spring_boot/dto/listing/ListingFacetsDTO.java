@@ -0,0 +1,35 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Listing counts per category and per price bucket (by the listing's cheapest item).
+ * Counts cover the whole catalog and are maintained incrementally, not per request.
+ */
+@Data
+@AllArgsConstructor
+public class ListingFacetsDTO {
+    private List<CategoryFacet> categories;
+    private List<PriceBucketFacet> priceBuckets;
+
+    @Data
+    @AllArgsConstructor
+    public static class CategoryFacet {
+        private Long categoryId;
+        private String name;
+        private long count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class PriceBucketFacet {
+        private BigDecimal minPrice;
+        // null for the open-ended top bucket
+        private BigDecimal maxPrice;
+        private long count;
+    }
+}
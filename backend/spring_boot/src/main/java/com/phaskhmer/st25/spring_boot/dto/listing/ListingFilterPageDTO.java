@@ -0,0 +1,24 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.List;
+
+import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A filtered page of the public feed together with the facet counts.
+ * Keeps the content/last fields of Spring's Page JSON so existing clients can read it.
+ */
+@Data
+@Builder
+public class ListingFilterPageDTO {
+    private List<Listing> content;
+    private int number;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private boolean last;
+    private ListingFacetsDTO facets;
+}
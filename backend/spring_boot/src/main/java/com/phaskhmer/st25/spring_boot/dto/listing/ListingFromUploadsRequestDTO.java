@@ -0,0 +1,30 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * A new listing whose images were already sent through /api/seller/uploads.
+ */
+@Data
+public class ListingFromUploadsRequestDTO {
+
+    private String title;
+
+    private Long categoryId;
+
+    private Long statusId;
+
+    private String thumbnailUploadId;
+
+    private List<ItemDTO> items;
+
+    @Data
+    public static class ItemDTO {
+        private String name;
+        private BigDecimal price;
+        private String imageUploadId;
+    }
+}
@@ -0,0 +1,31 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk import. Rows that failed are listed with their line number; the others were inserted.
+ */
+@Data
+@Builder
+public class ListingImportReportDTO {
+    private long rowsRead;
+    private long listingsImported;
+    private long itemsImported;
+    private long rowsFailed;
+    private List<RowError> errors;
+    // True when more rows failed than are listed in errors
+    private boolean errorsTruncated;
+    private long elapsedMillis;
+    private long itemsPerSecond;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
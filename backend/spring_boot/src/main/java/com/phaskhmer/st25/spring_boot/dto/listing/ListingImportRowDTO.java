@@ -0,0 +1,29 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * One line of a bulk import file. Image fields name entries in the uploaded image archive.
+ *
+ * Example line:
+ * {"title":"Silk scarf","categoryId":3,"image":"scarf.jpg","tags":["silk"],"items":[{"name":"Red","price":12.5,"image":"scarf-red.jpg"}]}
+ */
+@Data
+public class ListingImportRowDTO {
+    private String title;
+    private Long categoryId;
+    private Long statusId;
+    private String image;
+    private List<String> tags;
+    private List<Item> items;
+
+    @Data
+    public static class Item {
+        private String name;
+        private BigDecimal price;
+        private String image;
+    }
+}
@@ -0,0 +1,24 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Fields to change on a listing; anything left null stays as it is.
+ */
+@Data
+public class ListingPatchDTO {
+
+    private String title;
+
+    private Long categoryId;
+
+    private Long statusId;
+
+    // Replaces the whole tag list; an empty list removes all tags
+    private List<String> tags;
+
+    // A finished upload from /api/seller/uploads that becomes the new thumbnail
+    private String thumbnailUploadId;
+}
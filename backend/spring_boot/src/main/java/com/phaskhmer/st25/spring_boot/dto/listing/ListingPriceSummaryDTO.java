@@ -0,0 +1,19 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Category and cheapest item price of a listing, used to seed the facet counters.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListingPriceSummaryDTO {
+    private Long listingId;
+    private Long categoryId;
+    private BigDecimal minPrice;
+}
@@ -0,0 +1,16 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ListingSearchResultDTO {
+    private String query;
+    private int page;
+    private int size;
+    private long totalHits;
+    private List<ListingCardDTO> results;
+}
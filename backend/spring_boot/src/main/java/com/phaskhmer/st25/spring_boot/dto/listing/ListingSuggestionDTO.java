@@ -0,0 +1,7 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+/**
+ * One autocomplete suggestion: just enough to render the row and open the listing.
+ */
+public record ListingSuggestionDTO(Long id, String title) {
+}
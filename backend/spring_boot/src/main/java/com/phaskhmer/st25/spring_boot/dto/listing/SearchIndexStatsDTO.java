@@ -0,0 +1,18 @@
+package com.phaskhmer.st25.spring_boot.dto.listing;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Size of the listing search index and latency of recent index lookups.
+ */
+@Data
+@Builder
+public class SearchIndexStatsDTO {
+    private int documents;
+    private int terms;
+    private long postings;
+    private long queries;
+    private long p50Micros;
+    private long p99Micros;
+}
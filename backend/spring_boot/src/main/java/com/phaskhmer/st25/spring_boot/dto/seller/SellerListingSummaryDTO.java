@@ -0,0 +1,25 @@
+package com.phaskhmer.st25.spring_boot.dto.seller;
+
+import java.math.BigDecimal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of the seller's listing dashboard: the listing's own columns plus item count and price range.
+ * Built by a JPQL constructor projection, so items are never loaded as entities.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SellerListingSummaryDTO {
+    private Long id;
+    private String title;
+    private String image;
+    private String statusName;
+    private String categoryName;
+    private long itemCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+}
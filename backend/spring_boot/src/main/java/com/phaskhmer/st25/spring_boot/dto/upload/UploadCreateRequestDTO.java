@@ -0,0 +1,11 @@
+package com.phaskhmer.st25.spring_boot.dto.upload;
+
+import lombok.Data;
+
+@Data
+public class UploadCreateRequestDTO {
+    // Original name; only its extension is kept
+    private String fileName;
+    // Total size of the file in bytes
+    private Long size;
+}
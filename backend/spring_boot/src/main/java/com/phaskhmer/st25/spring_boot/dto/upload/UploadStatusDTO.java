@@ -0,0 +1,18 @@
+package com.phaskhmer.st25.spring_boot.dto.upload;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatusDTO {
+    private String id;
+    // Bytes received so far; the next chunk starts here
+    private long offset;
+    private long size;
+    private boolean complete;
+    // Name of the stored file, for GET /api/public/files/{name}; null until complete
+    private String fileName;
+}
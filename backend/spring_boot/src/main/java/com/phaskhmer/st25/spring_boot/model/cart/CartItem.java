@@ -1,5 +1,7 @@
 package com.phaskhmer.st25.spring_boot.model.cart;
 
+import java.math.BigDecimal;
+
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.phaskhmer.st25.spring_boot.model.listing.Item;
 
@@ -8,7 +10,10 @@ import lombok.Data;
 import lombok.ToString;
 
 @Entity
-@Table(name = "cart_items")
+// One line per item; CartWriter upserts against this key
+@Table(name = "cart_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_cart_items_cart_id_item_id", columnNames = {"cart_id", "item_id"})
+})
 @Data
 public class CartItem {
 
@@ -28,4 +33,7 @@ public class CartItem {
 
     @Column(nullable = false)
     private int quantity;
+
+    // Item price when the line was last priced; kept current by CartStore whenever the item's price changes
+    private BigDecimal unitPrice;
 }
\ No newline at end of file
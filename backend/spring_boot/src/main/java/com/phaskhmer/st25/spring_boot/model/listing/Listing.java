@@ -4,9 +4,11 @@ import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import com.phaskhmer.st25.spring_boot.model.Category;
 import com.phaskhmer.st25.spring_boot.model.Customer;
+import com.phaskhmer.st25.spring_boot.service.listing.ReferenceDataJsonSerializers;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.CollectionTable;
 import jakarta.persistence.ElementCollection;
@@ -15,9 +17,11 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderBy;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -27,7 +31,10 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "listings")
+@Table(name = "listings", indexes = {
+        @Index(name = "idx_listings_category_id", columnList = "category_id"),
+        @Index(name = "idx_listings_seller_id_id", columnList = "seller_id, id")
+})
 @Builder
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -40,15 +47,20 @@ public class Listing {
     private String title;
     private String image;
     @ElementCollection
-    @CollectionTable(name = "listing_tags", joinColumns = @JoinColumn(name = "listing_id"))
+    @CollectionTable(name = "listing_tags", joinColumns = @JoinColumn(name = "listing_id"),
+            indexes = @Index(name = "idx_listing_tags_tag", columnList = "tags, listing_id"))
     private List<String> tags;
 
     @JsonManagedReference
     @OneToMany(mappedBy = "listing", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Stable order even after an item row is updated in place
+    @OrderBy("id")
     private List<Item> items;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    // Lazy: names come from the in-memory ReferenceDataRegistry when serialized
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "status_id", nullable = false)
+    @JsonSerialize(using = ReferenceDataJsonSerializers.StatusSerializer.class)
     private ListingStatus status; 
 
     /**
@@ -56,6 +68,7 @@ public class Listing {
      */
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
+    @JsonSerialize(using = ReferenceDataJsonSerializers.CategorySerializer.class)
     private Category category;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,42 @@
+package com.phaskhmer.st25.spring_boot.model.upload;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+/**
+ * A resumable upload of one file. The bytes received so far live in a part file named after the id;
+ * how many there are is the part file's length, so no row update is needed per chunk.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_created_at", columnList = "created_at")
+})
+@Data
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    // Name in the file store once every byte has arrived; null while the upload is in progress
+    @Column(name = "stored_file_name")
+    private String storedFileName;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -1,8 +1,18 @@
 package com.phaskhmer.st25.spring_boot.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import com.phaskhmer.st25.spring_boot.model.listing.Item;
 
+import jakarta.persistence.QueryHint;
+
 public interface ItemRepository extends JpaRepository<Item, Long> {
-}
\ No newline at end of file
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<Item> findByListingIdInOrderById(Collection<Long> listingIds);
+}
@@ -1,12 +1,99 @@
 package com.phaskhmer.st25.spring_boot.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingExportDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingPriceSummaryDTO;
+import com.phaskhmer.st25.spring_boot.dto.seller.SellerListingSummaryDTO;
 import com.phaskhmer.st25.spring_boot.model.listing.Listing;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
-public interface ListingRepository extends JpaRepository<Listing, Long> {
+import org.hibernate.jpa.HibernateHints;
+
+import jakarta.persistence.QueryHint;
+
+public interface ListingRepository extends JpaRepository<Listing, Long>, JpaSpecificationExecutor<Listing> {
     List<Listing> findBySellerId(Long sellerId);
     List<Listing> findByTitleContainingIgnoreCase(String title);
-}
\ No newline at end of file
+
+    // Keyset pagination: seek on the primary key instead of OFFSET, and no count(*) query
+    List<Listing> findByOrderByIdDesc(Limit limit);
+    List<Listing> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
+
+    // One page of listing cards in a single SELECT (plus the count query), no entity graph loaded
+    @Query(value = """
+        SELECT new com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO(
+            l.id, l.title, l.image, c.id, c.name, s.name, COUNT(i), MIN(i.price))
+        FROM Listing l
+        LEFT JOIN l.category c
+        LEFT JOIN l.status s
+        LEFT JOIN l.items i
+        GROUP BY l.id, l.title, l.image, c.id, c.name, s.name
+        """,
+        countQuery = "SELECT COUNT(l) FROM Listing l")
+    Page<ListingCardDTO> findListingCards(Pageable pageable);
+
+    @Query("""
+        SELECT new com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO(
+            l.id, l.title, l.image, c.id, c.name, s.name, COUNT(i), MIN(i.price))
+        FROM Listing l
+        LEFT JOIN l.category c
+        LEFT JOIN l.status s
+        LEFT JOIN l.items i
+        WHERE l.id IN :ids
+        GROUP BY l.id, l.title, l.image, c.id, c.name, s.name
+        """)
+    List<ListingCardDTO> findListingCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Seller dashboard page; the (seller_id, id) index serves both the page and the count
+    @Query(value = """
+        SELECT new com.phaskhmer.st25.spring_boot.dto.seller.SellerListingSummaryDTO(
+            l.id, l.title, l.image, s.name, c.name, COUNT(i), MIN(i.price), MAX(i.price))
+        FROM Listing l
+        LEFT JOIN l.category c
+        LEFT JOIN l.status s
+        LEFT JOIN l.items i
+        WHERE l.seller.id = :sellerId
+        GROUP BY l.id, l.title, l.image, s.name, c.name
+        """,
+        countQuery = "SELECT COUNT(l) FROM Listing l WHERE l.seller.id = :sellerId")
+    Page<SellerListingSummaryDTO> findSellerListingSummaries(@Param("sellerId") Long sellerId, Pageable pageable);
+
+    // Seeds the facet counters on boot; afterwards they are maintained incrementally
+    @Query("""
+        SELECT new com.phaskhmer.st25.spring_boot.dto.listing.ListingPriceSummaryDTO(l.id, l.category.id, MIN(i.price))
+        FROM Listing l
+        LEFT JOIN l.items i
+        GROUP BY l.id, l.category.id
+        """)
+    List<ListingPriceSummaryDTO> findAllPriceSummaries();
+
+    // Forward-only cursor for the NDJSON export; must be consumed inside a transaction and closed
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        SELECT new com.phaskhmer.st25.spring_boot.dto.listing.ListingExportDTO(
+            l.id, l.title, l.image, c.id, c.name, s.name, l.seller.id)
+        FROM Listing l
+        LEFT JOIN l.category c
+        LEFT JOIN l.status s
+        ORDER BY l.id
+        """)
+    Stream<ListingExportDTO> streamExportRows();
+
+    @Query("SELECT l.id, t FROM Listing l JOIN l.tags t WHERE l.id IN :ids")
+    List<Object[]> findTagsByListingIdIn(@Param("ids") Collection<Long> ids);
+}
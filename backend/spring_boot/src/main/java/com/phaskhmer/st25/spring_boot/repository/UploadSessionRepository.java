@@ -0,0 +1,21 @@
+package com.phaskhmer.st25.spring_boot.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.phaskhmer.st25.spring_boot.model.upload.UploadSession;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndSellerId(String id, Long sellerId);
+
+    List<UploadSession> findByIdInAndSellerId(Collection<String> ids, Long sellerId);
+
+    List<UploadSession> findByCreatedAtBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,144 @@
+package com.phaskhmer.st25.spring_boot.repository.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Plain JDBC access to {@code carts} and {@code cart_items} for the in-memory cart store: loading a cart
+ * with its item details in one query, and writing back the final state of changed lines in batches.
+ *
+ * Every write is a single statement against a unique key (INSERT ... ON CONFLICT, DELETE by (cart_id,
+ * item_id)) rather than a read followed by an insert or update, so a replayed or retried batch cannot
+ * create duplicate rows. Lines are written with their absolute quantity, though, so this assumes a single
+ * writer per cart (the one {@link com.phaskhmer.st25.spring_boot.service.cart.CartStore} of a single
+ * application instance): a second writer's changes to the same line would be overwritten, not added up.
+ */
+@Repository
+public class CartWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CartWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * A cart line with its price snapshot and the current details of its item.
+     */
+    public record CartLineRow(long id, long itemId, int quantity, BigDecimal unitPrice, String name, BigDecimal price,
+                              String imageUrl, Long sellerId) {
+    }
+
+    public record ItemRow(long id, String name, BigDecimal price, String imageUrl, Long sellerId) {
+    }
+
+    /**
+     * The state a line should have in the table; a quantity of 0 means the cart's line for the item is
+     * deleted. A null unit price leaves the stored snapshot as it is.
+     */
+    public record LineWrite(long id, long cartId, long itemId, int quantity, BigDecimal unitPrice) {
+    }
+
+    /**
+     * The id of the customer's cart, creating the cart if needed, in one statement that is safe against a
+     * concurrent create (the no-op update makes RETURNING yield the existing row).
+     */
+    public long upsertCart(Long customerId) {
+        return jdbcTemplate.queryForObject(
+                "INSERT INTO carts (customer_id) VALUES (?)"
+                        + " ON CONFLICT (customer_id) DO UPDATE SET customer_id = EXCLUDED.customer_id RETURNING id",
+                Long.class, customerId);
+    }
+
+    /**
+     * Makes sure carts.customer_id and cart_items (cart_id, item_id) are unique, which the upserts rely on.
+     * On a database from before the constraints, duplicate carts are merged into the oldest one and
+     * duplicate lines into one line with the summed quantity first. Call inside a transaction.
+     */
+    public void ensureUniqueKeys() {
+        if (!hasUniqueIndex("carts", "customer_id")) {
+            jdbcTemplate.update("UPDATE cart_items ci SET cart_id = keep.id FROM carts c"
+                    + " JOIN (SELECT customer_id, MIN(id) AS id FROM carts GROUP BY customer_id) keep ON keep.customer_id = c.customer_id"
+                    + " WHERE ci.cart_id = c.id AND c.id <> keep.id");
+            jdbcTemplate.update("DELETE FROM carts c USING carts k WHERE c.customer_id = k.customer_id AND c.id > k.id");
+            jdbcTemplate.execute("ALTER TABLE carts ADD CONSTRAINT uk_carts_customer_id UNIQUE (customer_id)");
+        }
+        if (!hasUniqueIndex("cart_items", "cart_id", "item_id")) {
+            jdbcTemplate.update("UPDATE cart_items k SET quantity = d.total FROM (SELECT MIN(id) AS id, SUM(quantity) AS total"
+                    + " FROM cart_items GROUP BY cart_id, item_id HAVING COUNT(*) > 1) d WHERE k.id = d.id");
+            jdbcTemplate.update("DELETE FROM cart_items c USING cart_items k"
+                    + " WHERE c.cart_id = k.cart_id AND c.item_id = k.item_id AND c.id > k.id");
+            jdbcTemplate.execute("ALTER TABLE cart_items ADD CONSTRAINT uk_cart_items_cart_id_item_id UNIQUE (cart_id, item_id)");
+        }
+    }
+
+    private boolean hasUniqueIndex(String table, String... columns) {
+        String[] sorted = columns.clone();
+        Arrays.sort(sorted);
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_index i WHERE i.indrelid = ?::regclass AND i.indisunique"
+                        + " AND (SELECT array_agg(a.attname::text ORDER BY a.attname::text) FROM pg_attribute a"
+                        + " WHERE a.attrelid = i.indrelid AND a.attnum = ANY (i.indkey)) = string_to_array(?, ',')",
+                Integer.class, table, String.join(",", sorted));
+        return count != null && count > 0;
+    }
+
+    public List<CartLineRow> loadLines(long cartId) {
+        return jdbcTemplate.query(
+                "SELECT ci.id, ci.item_id, ci.quantity, ci.unit_price, i.name, i.price, i.image_url, l.seller_id"
+                        + " FROM cart_items ci JOIN items i ON i.id = ci.item_id LEFT JOIN listings l ON l.id = i.listing_id"
+                        + " WHERE ci.cart_id = ? ORDER BY ci.id",
+                (rs, rowNum) -> new CartLineRow(rs.getLong(1), rs.getLong(2), rs.getInt(3), rs.getBigDecimal(4),
+                        rs.getString(5), rs.getBigDecimal(6), rs.getString(7), rs.getObject(8, Long.class)),
+                cartId);
+    }
+
+    public Optional<ItemRow> findItem(long itemId) {
+        return jdbcTemplate.query("SELECT i.id, i.name, i.price, i.image_url, l.seller_id FROM items i"
+                        + " LEFT JOIN listings l ON l.id = i.listing_id WHERE i.id = ?",
+                (rs, rowNum) -> new ItemRow(rs.getLong(1), rs.getString(2), rs.getBigDecimal(3), rs.getString(4),
+                        rs.getObject(5, Long.class)),
+                itemId).stream().findFirst();
+    }
+
+    /**
+     * Brings the given lines to their final state: deletes first (a removed and re-added item gets a new
+     * line id), then one upsert per remaining line; both are keyed on (cart_id, item_id), so a row keeps the
+     * id it was inserted with. Idempotent, so a batch may be written again after a failure or a crash. Call
+     * inside a transaction.
+     */
+    public void write(List<LineWrite> lines) {
+        List<Object[]> deletes = new ArrayList<>();
+        List<LineWrite> upserts = new ArrayList<>();
+        for (LineWrite line : lines) {
+            if (line.quantity() > 0) {
+                upserts.add(line);
+            } else {
+                deletes.add(new Object[] { line.cartId(), line.itemId() });
+            }
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM cart_items WHERE cart_id = ? AND item_id = ?", deletes);
+        }
+        if (upserts.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(upserts.size());
+        for (LineWrite line : upserts) {
+            rows.add(new Object[] { line.id(), line.cartId(), line.itemId(), line.quantity(),
+                    new SqlParameterValue(Types.NUMERIC, line.unitPrice()) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO cart_items (id, cart_id, item_id, quantity, unit_price) VALUES (?, ?, ?, ?, ?)"
+                + " ON CONFLICT (cart_id, item_id) DO UPDATE SET quantity = EXCLUDED.quantity,"
+                + " unit_price = COALESCE(EXCLUDED.unit_price, cart_items.unit_price)", rows);
+    }
+}
@@ -0,0 +1,72 @@
+package com.phaskhmer.st25.spring_boot.repository.jdbc;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+
+/**
+ * Inserts listings, their items and tags with JDBC batches instead of one JPA persist per row.
+ *
+ * Ids must already be set on every listing and item (see {@link SequenceIdAllocator}). With
+ * reWriteBatchedInserts on the Postgres driver each batch goes out as a few multi-row INSERTs.
+ */
+@Repository
+public class ListingBulkWriter {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ListingBulkWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insert(List<Listing> listings) {
+        List<Item> items = new ArrayList<>();
+        List<Object[]> tags = new ArrayList<>();
+        for (Listing listing : listings) {
+            items.addAll(listing.getItems());
+            if (listing.getTags() != null) {
+                for (String tag : listing.getTags()) {
+                    tags.add(new Object[]{listing.getId(), tag});
+                }
+            }
+        }
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO listings (id, title, image, status_id, category_id, seller_id) VALUES (?, ?, ?, ?, ?, ?)",
+                listings, BATCH_SIZE, (ps, listing) -> {
+                    ps.setLong(1, listing.getId());
+                    ps.setString(2, listing.getTitle());
+                    ps.setString(3, listing.getImage());
+                    ps.setLong(4, listing.getStatus().getId());
+                    ps.setObject(5, listing.getCategory() != null ? listing.getCategory().getId() : null, Types.BIGINT);
+                    ps.setLong(6, listing.getSeller().getId());
+                });
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO items (id, image_url, name, price, listing_id) VALUES (?, ?, ?, ?, ?)",
+                items, BATCH_SIZE, (ps, item) -> {
+                    ps.setLong(1, item.getId());
+                    ps.setString(2, item.getImageUrl());
+                    ps.setString(3, item.getName());
+                    ps.setBigDecimal(4, item.getPrice());
+                    ps.setLong(5, item.getListing().getId());
+                });
+
+        if (!tags.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO listing_tags (listing_id, tags) VALUES (?, ?)",
+                    tags, BATCH_SIZE, (ps, tag) -> {
+                        ps.setLong(1, (Long) tag[0]);
+                        ps.setString(2, (String) tag[1]);
+                    });
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.phaskhmer.st25.spring_boot.repository.jdbc;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Applies seller edits to a listing or one of its items with a single UPDATE that sets only the columns
+ * being changed, instead of loading the entity graph and writing it back.
+ *
+ * Ownership is part of the WHERE clause, so an update of someone else's listing simply matches no row.
+ */
+@Repository
+public class ListingPatchWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ListingPatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Null arguments leave the column (or the tags) as they are.
+     * @return false when the seller has no listing with that id.
+     */
+    public boolean updateListing(Long listingId, Long sellerId, String title, String image, Long statusId,
+                                 Long categoryId, List<String> tags) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        addAssignment(assignments, args, "title", title);
+        addAssignment(assignments, args, "image", image);
+        addAssignment(assignments, args, "status_id", statusId);
+        addAssignment(assignments, args, "category_id", categoryId);
+
+        boolean found;
+        if (assignments.isEmpty()) {
+            found = exists("SELECT COUNT(*) FROM listings WHERE id = ? AND seller_id = ?", listingId, sellerId);
+        } else {
+            args.add(listingId);
+            args.add(sellerId);
+            found = jdbcTemplate.update(
+                    "UPDATE listings SET " + String.join(", ", assignments) + " WHERE id = ? AND seller_id = ?",
+                    args.toArray()) > 0;
+        }
+        if (found && tags != null) {
+            replaceTags(listingId, tags);
+        }
+        return found;
+    }
+
+    /**
+     * Null arguments leave the column as it is.
+     * @return false when the item does not exist or is not on one of the seller's listings.
+     */
+    public boolean updateItem(Long listingId, Long itemId, Long sellerId, String name, BigDecimal price, String imageUrl) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        addAssignment(assignments, args, "name", name);
+        addAssignment(assignments, args, "price", price);
+        addAssignment(assignments, args, "image_url", imageUrl);
+
+        String owned = " WHERE id = ? AND listing_id = ? AND listing_id IN (SELECT id FROM listings WHERE id = ? AND seller_id = ?)";
+        if (assignments.isEmpty()) {
+            return exists("SELECT COUNT(*) FROM items" + owned, itemId, listingId, listingId, sellerId);
+        }
+        args.add(itemId);
+        args.add(listingId);
+        args.add(listingId);
+        args.add(sellerId);
+        return jdbcTemplate.update("UPDATE items SET " + String.join(", ", assignments) + owned, args.toArray()) > 0;
+    }
+
+    /**
+     * Rewrites the tags only when they actually changed.
+     */
+    private void replaceTags(Long listingId, List<String> tags) {
+        List<String> current = jdbcTemplate.queryForList(
+                "SELECT tags FROM listing_tags WHERE listing_id = ?", String.class, listingId);
+        if (current.equals(tags)) {
+            return;
+        }
+        jdbcTemplate.update("DELETE FROM listing_tags WHERE listing_id = ?", listingId);
+        if (!tags.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO listing_tags (listing_id, tags) VALUES (?, ?)",
+                    tags, tags.size(), (ps, tag) -> {
+                        ps.setLong(1, listingId);
+                        ps.setString(2, tag);
+                    });
+        }
+    }
+
+    private boolean exists(String countSql, Object... args) {
+        Long count = jdbcTemplate.queryForObject(countSql, Long.class, args);
+        return count != null && count > 0;
+    }
+
+    private static void addAssignment(List<String> assignments, List<Object> args, String column, Object value) {
+        if (value != null) {
+            assignments.add(column + " = ?");
+            args.add(value);
+        }
+    }
+}
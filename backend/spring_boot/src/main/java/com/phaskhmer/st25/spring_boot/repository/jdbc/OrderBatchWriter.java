@@ -0,0 +1,118 @@
+package com.phaskhmer.st25.spring_boot.repository.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.phaskhmer.st25.spring_boot.model.order.OrderStatus;
+
+/**
+ * Writes the orders of a checkout with JDBC batches: one id block per table from
+ * {@link SequenceIdAllocator}, one batch for {@code orders} and one for {@code order_items}, whatever the
+ * size of the cart. Call inside a transaction.
+ */
+@Repository
+public class OrderBatchWriter {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SequenceIdAllocator sequenceIdAllocator;
+
+    public OrderBatchWriter(JdbcTemplate jdbcTemplate, SequenceIdAllocator sequenceIdAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+    }
+
+    /**
+     * One cart line to turn into its own order.
+     */
+    public record OrderLine(long itemId, int quantity, BigDecimal unitPrice) {
+    }
+
+    private record OrderRow(long id, long itemRowId, OrderLine line) {
+    }
+
+    /**
+     * The current prices of the given items, locked (FOR SHARE) until the transaction ends so a concurrent
+     * price edit cannot slip in between the check and the orders. Items that no longer exist are missing
+     * from the map; items without a price map to null. Call inside a transaction.
+     */
+    public Map<Long, BigDecimal> lockPrices(Collection<Long> itemIds) {
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        if (itemIds.isEmpty()) {
+            return prices;
+        }
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT id, price FROM items WHERE id = ANY (?) FOR SHARE");
+            ps.setArray(1, connection.createArrayOf("bigint", itemIds.toArray()));
+            return ps;
+        }, rs -> {
+            prices.put(rs.getLong(1), rs.getBigDecimal(2));
+        });
+        return prices;
+    }
+
+    /**
+     * Creates one PENDING order with a single order item per line. Every line must have a unit price.
+     * @return The ids of the new orders, index for index with the lines.
+     */
+    public List<Long> insertPending(Long customerId, List<OrderLine> lines) {
+        long[] orderIds = sequenceIdAllocator.allocate("orders", "id", lines.size());
+        long[] itemRowIds = sequenceIdAllocator.allocate("order_items", "id", lines.size());
+        List<OrderRow> rows = new ArrayList<>(lines.size());
+        List<Long> ids = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            rows.add(new OrderRow(orderIds[i], itemRowIds[i], lines.get(i)));
+            ids.add(orderIds[i]);
+        }
+        Timestamp orderDate = Timestamp.valueOf(LocalDateTime.now());
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO orders (id, customer_id, order_date, status, total_amount) VALUES (?, ?, ?, ?, ?)",
+                rows, BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.id());
+                    ps.setLong(2, customerId);
+                    ps.setTimestamp(3, orderDate);
+                    ps.setString(4, OrderStatus.PENDING.name());
+                    ps.setBigDecimal(5, row.line().unitPrice().multiply(BigDecimal.valueOf(row.line().quantity())));
+                });
+
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO order_items (id, order_id, item_id, quantity, unit_price) VALUES (?, ?, ?, ?, ?)",
+                rows, BATCH_SIZE, (ps, row) -> {
+                    ps.setLong(1, row.itemRowId());
+                    ps.setLong(2, row.id());
+                    ps.setLong(3, row.line().itemId());
+                    ps.setInt(4, row.line().quantity());
+                    ps.setBigDecimal(5, row.line().unitPrice());
+                });
+        return ids;
+    }
+
+    /**
+     * Sets the Stripe session id on all the given orders in one statement.
+     */
+    public void attachSession(List<Long> orderIds, String sessionId) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("UPDATE orders SET stripe_session_id = ? WHERE id = ANY (?)");
+            Array ids = connection.createArrayOf("bigint", orderIds.toArray());
+            ps.setString(1, sessionId);
+            ps.setArray(2, ids);
+            return ps;
+        });
+    }
+}
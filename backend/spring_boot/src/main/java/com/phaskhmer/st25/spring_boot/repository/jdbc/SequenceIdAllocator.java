@@ -0,0 +1,48 @@
+package com.phaskhmer.st25.spring_boot.repository.jdbc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out blocks of primary keys from the sequence behind an identity column, one round trip per block.
+ *
+ * Lets JDBC batch inserts supply their own ids (and link child rows) while sharing the id source used by
+ * JPA inserts. Postgres only.
+ */
+@Component
+public class SequenceIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, String> sequenceNames = new ConcurrentHashMap<>();
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long[] allocate(String table, String idColumn, int count) {
+        if (count == 0) {
+            return new long[0];
+        }
+        String sequence = sequenceNames.computeIfAbsent(table + "." + idColumn, key -> resolveSequence(table, idColumn));
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)", Long.class, sequence, count);
+        long[] block = new long[ids.size()];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = ids.get(i);
+        }
+        return block;
+    }
+
+    private String resolveSequence(String table, String idColumn) {
+        String sequence = jdbcTemplate.queryForObject(
+                "SELECT pg_get_serial_sequence(?, ?)", String.class, table, idColumn);
+        if (sequence == null) {
+            throw new IllegalStateException("No sequence behind " + table + "." + idColumn);
+        }
+        return sequence;
+    }
+}
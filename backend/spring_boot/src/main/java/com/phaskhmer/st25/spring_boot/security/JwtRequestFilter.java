@@ -4,11 +4,15 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -32,6 +36,10 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Value("${app.jwt.secret}")
     private String secret;
 
+    // Users in app.admin.user-ids also get this role (maintenance endpoints, see SecurityConfig)
+    @Value("${app.admin.user-ids:}")
+    private Set<String> adminUserIds;
+
     private static final String USER_ID_CLAIM = "user_id";
 
     @Override
@@ -80,8 +88,12 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
             // NOTE: We trust the token from Django. We use the principalId (user ID) 
             // as the username/principal for Spring Security context.
-            // Create a dummy UserDetails object (no password or special roles needed for resource server)
-            UserDetails userDetails = new User(principalId, "", new ArrayList<>());
+            // Create a dummy UserDetails object (no password; only configured admins get a role)
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            if (adminUserIds.contains(principalId)) {
+                authorities.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
+            }
+            UserDetails userDetails = new User(principalId, "", authorities);
 
             UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                     userDetails, null, userDetails.getAuthorities());
@@ -2,6 +2,8 @@ package com.phaskhmer.st25.spring_boot.security;
 
 import java.util.Arrays;
 
+import jakarta.servlet.DispatcherType;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -38,6 +40,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // CRITICAL FIX: Allow OPTIONS preflight requests to bypass security
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                        // The second dispatch of a streamed response was already authorized on the original request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers(
                                 "/payment-success",
                                 "/payment-return",
@@ -55,6 +59,9 @@ public class SecurityConfig {
                         .requestMatchers("/api/payments/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/payment/status").permitAll()
                         .requestMatchers("/api/checkout/**").authenticated()
+                        // Full-table maintenance jobs
+                        .requestMatchers(HttpMethod.POST, "/api/v1/listings/search/rebuild").hasRole("ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/v1/listings/reference-data/refresh").hasRole("ADMIN")
                         .requestMatchers("/api/**").authenticated()
                         // Default catch-all rule (already covered by /api/** but kept for completeness)
                         .anyRequest().authenticated()
@@ -71,8 +78,10 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         // Ensure you include 127.0.0.1:8080 or the IP address if you use that
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:5000", "http://127.0.0.1:5000", "https://gbp-minority-governance-passenger.trycloudflare.com"));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        // Resumable uploads report progress in these; the cart version (for If-Match) is the ETag
+        configuration.setExposedHeaders(Arrays.asList("Location", "Upload-Offset", "Upload-Length", "ETag"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
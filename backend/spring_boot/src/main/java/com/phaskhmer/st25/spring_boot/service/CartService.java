@@ -1,95 +1,64 @@
 package com.phaskhmer.st25.spring_boot.service;
 
-import com.phaskhmer.st25.spring_boot.model.Customer;
-import com.phaskhmer.st25.spring_boot.model.cart.Cart;
-import com.phaskhmer.st25.spring_boot.model.cart.CartItem;
-import com.phaskhmer.st25.spring_boot.model.listing.Item;
-import com.phaskhmer.st25.spring_boot.repository.CartItemRepository;
-import com.phaskhmer.st25.spring_boot.repository.CartRepository;
-import com.phaskhmer.st25.spring_boot.repository.CustomerRepository;
-import com.phaskhmer.st25.spring_boot.repository.ItemRepository; // You will need an ItemRepository
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDeltaDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartPatchDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartSummaryDTO;
+import com.phaskhmer.st25.spring_boot.service.cart.CartStore;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
+/**
+ * Cart operations for the current customer. Carts live in the {@link CartStore}, which writes them to the
+ * database in the background, so the cart tables may lag behind what these methods return.
+ */
 @Service
 @RequiredArgsConstructor
-@Transactional
 public class CartService {
 
-    private final CartRepository cartRepository;
-    private final CartItemRepository cartItemRepository;
-    private final CustomerRepository customerRepository;
-    private final ItemRepository itemRepository;
+    private final CartStore cartStore;
 
     // Gets the current user's cart, or creates one if it doesn't exist.
-    public Cart getOrCreateCart(Long customerId) {
-        return cartRepository.findByCustomerId(customerId).orElseGet(() -> {
-            Customer customer = customerRepository.findById(customerId)
-                    .orElseThrow(() -> new RuntimeException("Customer not found"));
-            Cart newCart = new Cart();
-            newCart.setCustomer(customer);
-            return cartRepository.save(newCart);
-        });
+    public CartDTO getOrCreateCart(Long customerId) {
+        return cartStore.get(customerId);
     }
 
-    public Cart addItemToCart(Long customerId, Long itemId, int quantity) {
-        Cart cart = getOrCreateCart(customerId);
-        Item item = itemRepository.findById(itemId)
-                .orElseThrow(() -> new RuntimeException("Item not found"));
+    public CartDTO addItemToCart(Long customerId, Long itemId, int quantity) {
+        return cartStore.add(customerId, itemId, quantity);
+    }
 
-        // Check if item is already in cart
-        cartItemRepository.findByCartIdAndItemId(cart.getId(), itemId)
-                .ifPresentOrElse(
-                        // If present, update quantity
-                        cartItem -> {
-                            cartItem.setQuantity(cartItem.getQuantity() + quantity);
-                            cartItemRepository.save(cartItem);
-                        },
-                        // If not present, create a new cart item
-                        () -> {
-                            CartItem newCartItem = new CartItem();
-                            newCartItem.setCart(cart);
-                            newCartItem.setItem(item);
-                            newCartItem.setQuantity(quantity);
-                            cart.getItems().add(newCartItem); // Add to the list in the Cart object
-                            cartRepository.save(cart); // Persist through the cart
-                        }
-                );
-        return getOrCreateCart(customerId); // Return the updated cart
+    public CartDTO removeItemFromCart(Long customerId, Long itemId) {
+        return cartStore.remove(customerId, itemId);
     }
 
-    public Cart removeItemFromCart(Long customerId, Long itemId) {
-        Cart cart = getOrCreateCart(customerId);
-        CartItem cartItem = cartItemRepository.findByCartIdAndItemId(cart.getId(), itemId)
-                .orElseThrow(() -> new RuntimeException("Item not found in cart"));
+    public CartDTO updateItemQuantity(Long customerId, Long itemId, int quantity) {
+        return cartStore.setQuantity(customerId, itemId, quantity);
+    }
 
-        cartItemRepository.delete(cartItem);
-        return getOrCreateCart(customerId);
+    /**
+     * Applies a list of add/set/remove operations atomically.
+     * @param expectedVersion From If-Match; null applies the change whatever the current version.
+     */
+    public CartDeltaDTO patchCart(Long customerId, CartPatchDTO patch, Long expectedVersion) {
+        return cartStore.patch(customerId, patch.getOperations(), expectedVersion);
     }
 
-    public Cart updateItemQuantity(Long customerId, Long itemId, int quantity) {
-        if (quantity <= 0) {
-            return removeItemFromCart(customerId, itemId);
-        }
+    public void repriceCart(Long customerId, Map<Long, BigDecimal> prices) {
+        cartStore.reprice(customerId, prices);
+    }
 
-        Cart cart = getOrCreateCart(customerId);
-        CartItem cartItem = cartItemRepository.findByCartIdAndItemId(cart.getId(), itemId)
-                .orElseThrow(() -> new RuntimeException("Item not found in cart"));
+    public void clearCart(Long customerId) {
+        cartStore.clear(customerId);
+    }
 
-        cartItem.setQuantity(quantity);
-        cartItemRepository.save(cartItem);
-        return getOrCreateCart(customerId);
+    public CartSummaryDTO getCartSummary(Long customerId) {
+        return cartStore.summary(customerId);
     }
 
     public BigDecimal calculateCartTotal(Long customerId) {
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("Cart not found for customer ID: " + customerId));
-
-        return cart.getItems().stream()
-                .map(item -> item.getItem().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return cartStore.summary(customerId).getSubtotal();
     }
-}
\ No newline at end of file
+}
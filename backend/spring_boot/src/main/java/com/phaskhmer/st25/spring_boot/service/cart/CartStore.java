@@ -0,0 +1,772 @@
+package com.phaskhmer.st25.spring_boot.service.cart;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.phaskhmer.st25.spring_boot.dto.ItemSummaryDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartDeltaDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartLineDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartPatchDTO;
+import com.phaskhmer.st25.spring_boot.dto.cart.CartSummaryDTO;
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.CartWriter;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.CartWriter.CartLineRow;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.CartWriter.ItemRow;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.CartWriter.LineWrite;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.SequenceIdAllocator;
+
+/**
+ * Active carts, kept in memory and written to {@code carts}/{@code cart_items} behind the requests.
+ *
+ * A cart is loaded (one query, with its item details) on first use and then served and changed in memory.
+ * Customers are spread over lock stripes; everything about one cart, including writing it out, happens
+ * under its stripe's lock. A change is queued in the {@link CartWriteAheadLog} and applied under the lock,
+ * and the request then waits for the log's group commit with the lock released, so requests on the same
+ * stripe share one fsync instead of taking turns. Any request on a cart (reads included) returns only once
+ * the cart's last logged change is durable. The flusher writes the final state of every changed line in one
+ * batch per stripe, so ten taps on "+" cost one UPDATE. If the log cannot be appended to, the change is
+ * written to the database synchronously instead; if that fails too, the request fails and the cart is left
+ * as it was. If a queued change cannot be written to the log, the cart is written through before the
+ * request returns; if that fails too, the request fails but the change stays in memory for the flusher.
+ *
+ * Each line keeps a snapshot of its unit price (stored in cart_items.unit_price), and each cart a summary
+ * (subtotal, item count, per-seller groups) recomputed from the snapshots on every change, so reads never
+ * price anything. Snapshots move only when an item's price actually changes ({@link #onItemsChanged}).
+ *
+ * Line ids come from the cart_items sequence up front, so a line has its final id before it is written.
+ * Carts that have been idle for a while and have nothing left to write are dropped from memory. The store
+ * assumes it is the only writer of cart rows, i.e. a single application instance.
+ */
+@Component
+public class CartStore implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartStore.class);
+
+    private static final int STRIPES = 64;
+    private static final int LINE_ID_BLOCK = 64;
+    private static final long EVICTION_INTERVAL_MILLIS = 60_000;
+    private static final int MAX_OPERATIONS = 100;
+    private static final int MAX_CACHED_ITEMS = 100_000;
+
+    private final CartWriter cartWriter;
+    private final CartWriteAheadLog writeAheadLog;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${cart.store.write-behind:true}")
+    private boolean writeBehind;
+
+    @Value("${cart.store.idle-minutes:30}")
+    private long idleMinutes;
+
+    private final Map<Long, CartState> carts = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    // Name, price and image of the items in carts; dropped when a seller edits the item or no cart holds it
+    private final Map<Long, ItemRow> items = new ConcurrentHashMap<>();
+    // Bumped (per slot of item ids) before an edited item is dropped, so a row read before the edit is not cached
+    private final AtomicLongArray itemInvalidations = new AtomicLongArray(STRIPES);
+    // Customers whose in-memory cart has a line for the item; changed under the cart's stripe lock
+    private final Map<Long, Set<Long>> cartsByItem = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirtyCustomers = ConcurrentHashMap.newKeySet();
+    // Appending and marking a cart dirty (read) vs. sealing the log and taking the dirty carts (write)
+    private final ReentrantReadWriteLock logLock = new ReentrantReadWriteLock();
+
+    private final ArrayDeque<Long> lineIds = new ArrayDeque<>();
+    // Versions are unique across carts and restarts (seeded from the clock), so a stale If-Match never matches
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis() * 1000);
+    private long lastEviction = System.currentTimeMillis();
+
+    /**
+     * A cart line with the price it was last priced at and the seller of its item.
+     */
+    private record Line(long id, long itemId, int quantity, BigDecimal unitPrice, Long sellerId) {
+
+        BigDecimal lineTotal() {
+            return unitPrice == null ? BigDecimal.ZERO : unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+
+    private record SellerTotals(Long sellerId, List<Long> itemIds, int itemCount, BigDecimal subtotal) {
+    }
+
+    /**
+     * The cart's read model, recomputed from the line snapshots whenever a line changes.
+     */
+    private record Summary(int lineCount, int itemCount, BigDecimal subtotal, List<SellerTotals> sellers) {
+    }
+
+    private static final class CartState {
+        final Long customerId;
+        final long cartId;
+        // Keyed by item id, in the order the items were added
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        // Lines changed or removed since the last write: line id to item id, as removed lines are deleted by item
+        final Map<Long, Long> dirtyLines = new HashMap<>();
+        long version;
+        Summary summary;
+        long lastAccess;
+        // The log batch holding the cart's last change; waiting on it is free once it is written
+        CartWriteAheadLog.Batch logged;
+
+        CartState(Long customerId, long cartId, long version) {
+            this.customerId = customerId;
+            this.cartId = cartId;
+            this.version = version;
+        }
+    }
+
+    public CartStore(CartWriter cartWriter, CartWriteAheadLog writeAheadLog, SequenceIdAllocator sequenceIdAllocator,
+                     PlatformTransactionManager transactionManager) {
+        this.cartWriter = cartWriter;
+        this.writeAheadLog = writeAheadLog;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Cart writes commit on their own, also when called inside another transaction (the payment webhook)
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Writes the changes a crash left in the log, before the first request can load a cart from the tables.
+     * The unique keys the writes rely on are checked (and added to older databases) first.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        transactionTemplate.executeWithoutResult(tx -> cartWriter.ensureUniqueKeys());
+        List<LineWrite> recovered = writeAheadLog.readRecovered();
+        if (!recovered.isEmpty()) {
+            Map<Long, LineWrite> latest = new LinkedHashMap<>();
+            for (LineWrite line : recovered) {
+                latest.put(line.id(), line);
+            }
+            transactionTemplate.executeWithoutResult(tx -> cartWriter.write(new ArrayList<>(latest.values())));
+            logger.info("Replayed {} cart changes from the write-ahead log", latest.size());
+        }
+        writeAheadLog.deleteRecovered();
+    }
+
+    public CartDTO get(Long customerId) {
+        return withCart(customerId, this::toDto);
+    }
+
+    /**
+     * Adds to the quantity of the item's line, or adds a line.
+     * @throws IllegalArgumentException when the item does not exist or the quantity is not positive.
+     */
+    public CartDTO add(Long customerId, Long itemId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive.");
+        }
+        if (itemId == null || itemRow(itemId) == null) {
+            throw new IllegalArgumentException("Item not found");
+        }
+        return withCart(customerId, cart -> {
+            Line line = cart.lines.get(itemId);
+            LineWrite change = line == null
+                    ? new LineWrite(nextLineId(), cart.cartId, itemId, quantity, itemRow(itemId).price())
+                    : new LineWrite(line.id(), cart.cartId, itemId, line.quantity() + quantity, line.unitPrice());
+            persist(customerId, cart, List.of(change));
+            return toDto(cart);
+        });
+    }
+
+    /**
+     * Sets the quantity of the item's line; zero or less removes it.
+     * @throws IllegalArgumentException when the item is not in the cart.
+     */
+    public CartDTO setQuantity(Long customerId, Long itemId, int quantity) {
+        return withCart(customerId, cart -> {
+            Line line = existingLine(cart, itemId);
+            persist(customerId, cart, List.of(
+                    new LineWrite(line.id(), cart.cartId, itemId, Math.max(0, quantity), line.unitPrice())));
+            return toDto(cart);
+        });
+    }
+
+    /**
+     * @throws IllegalArgumentException when the item is not in the cart.
+     */
+    public CartDTO remove(Long customerId, Long itemId) {
+        return setQuantity(customerId, itemId, 0);
+    }
+
+    /**
+     * Applies several operations as one change: they are all checked first, run in order against a copy of
+     * the lines, and only the net difference is made durable, as a single log record (or transaction).
+     *
+     * @param expectedVersion The version the client last saw (If-Match), or null to apply unconditionally.
+     * @return The lines that changed, the items removed and the new totals.
+     * @throws IllegalArgumentException when an operation is malformed or names an unknown item.
+     * @throws CartVersionMismatchException when the cart is no longer at the expected version.
+     */
+    public CartDeltaDTO patch(Long customerId, List<CartPatchDTO.Operation> operations, Long expectedVersion) {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("No operations given.");
+        }
+        if (operations.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_OPERATIONS + " operations per request.");
+        }
+        for (CartPatchDTO.Operation operation : operations) {
+            validate(operation);
+        }
+
+        return withCart(customerId, cart -> {
+            if (expectedVersion != null && expectedVersion != cart.version) {
+                throw new CartVersionMismatchException(cart.version);
+            }
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            cart.lines.values().forEach(line -> quantities.put(line.itemId(), line.quantity()));
+            for (CartPatchDTO.Operation operation : operations) {
+                Long itemId = operation.getItemId();
+                switch (operation.getOp().toLowerCase(Locale.ROOT)) {
+                    case "add" -> quantities.merge(itemId, operation.getQuantity(), Integer::sum);
+                    case "set" -> {
+                        if (operation.getQuantity() > 0) {
+                            quantities.put(itemId, operation.getQuantity());
+                        } else {
+                            quantities.remove(itemId);
+                        }
+                    }
+                    default -> quantities.remove(itemId);
+                }
+            }
+
+            List<LineWrite> changes = new ArrayList<>();
+            Set<Long> itemIds = new LinkedHashSet<>(cart.lines.keySet());
+            itemIds.addAll(quantities.keySet());
+            for (Long itemId : itemIds) {
+                Line line = cart.lines.get(itemId);
+                Integer quantity = quantities.get(itemId);
+                if (line == null) {
+                    changes.add(new LineWrite(nextLineId(), cart.cartId, itemId, quantity, itemRow(itemId).price()));
+                } else if (quantity == null) {
+                    changes.add(new LineWrite(line.id(), cart.cartId, itemId, 0, null));
+                } else if (quantity != line.quantity()) {
+                    changes.add(new LineWrite(line.id(), cart.cartId, itemId, quantity, line.unitPrice()));
+                }
+            }
+            if (!changes.isEmpty()) {
+                persist(customerId, cart, changes);
+            }
+
+            List<CartLineDTO> changed = new ArrayList<>();
+            List<Long> removedItemIds = new ArrayList<>();
+            for (LineWrite change : changes) {
+                if (change.quantity() > 0) {
+                    changed.add(toLineDto(cart.lines.get(change.itemId())));
+                } else {
+                    removedItemIds.add(change.itemId());
+                }
+            }
+            return new CartDeltaDTO(cart.version, changed, removedItemIds, cart.summary.itemCount(), cart.summary.subtotal());
+        });
+    }
+
+    private void validate(CartPatchDTO.Operation operation) {
+        String op = operation.getOp() == null ? "" : operation.getOp().toLowerCase(Locale.ROOT);
+        if (operation.getItemId() == null) {
+            throw new IllegalArgumentException("Every operation needs an itemId.");
+        }
+        switch (op) {
+            case "add" -> {
+                if (operation.getQuantity() == null || operation.getQuantity() <= 0) {
+                    throw new IllegalArgumentException("add needs a positive quantity (item " + operation.getItemId() + ").");
+                }
+            }
+            case "set" -> {
+                if (operation.getQuantity() == null) {
+                    throw new IllegalArgumentException("set needs a quantity (item " + operation.getItemId() + ").");
+                }
+            }
+            case "remove" -> {
+                return;
+            }
+            default -> throw new IllegalArgumentException("Unknown operation '" + operation.getOp() + "'; use add, set or remove.");
+        }
+        if (operation.getQuantity() > 0 && itemRow(operation.getItemId()) == null) {
+            throw new IllegalArgumentException("Item not found: " + operation.getItemId());
+        }
+    }
+
+    /**
+     * Empties the cart, e.g. once its orders are paid.
+     */
+    public void clear(Long customerId) {
+        withCart(customerId, cart -> {
+            List<LineWrite> changes = new ArrayList<>(cart.lines.size());
+            for (Line line : cart.lines.values()) {
+                changes.add(new LineWrite(line.id(), cart.cartId, line.itemId(), 0, null));
+            }
+            if (!changes.isEmpty()) {
+                persist(customerId, cart, changes);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * The precomputed totals of the customer's cart, for the cart badge and checkout.
+     */
+    public CartSummaryDTO summary(Long customerId) {
+        return withCart(customerId, cart -> {
+            Summary summary = cart.summary;
+            List<CartSummaryDTO.SellerGroup> sellers = new ArrayList<>(summary.sellers().size());
+            for (SellerTotals seller : summary.sellers()) {
+                sellers.add(new CartSummaryDTO.SellerGroup(seller.sellerId(), seller.itemIds(), seller.itemCount(), seller.subtotal()));
+            }
+            return new CartSummaryDTO(cart.cartId, cart.version, summary.lineCount(), summary.itemCount(),
+                    summary.subtotal(), sellers);
+        });
+    }
+
+    /**
+     * Called after items were edited. Forgets their cached names and images, and reprices the lines of
+     * carts in memory whose price snapshot differs from the new price. Every cart in memory holding an item
+     * whose name, image or price may have changed gets a new version, so its ETag no longer matches. Only
+     * those carts are visited; carts not in memory are repriced when they are loaded.
+     */
+    public void onItemsChanged(Collection<Item> changed) {
+        Map<Long, BigDecimal> prices = new HashMap<>();
+        Set<Long> affected = new HashSet<>();
+        for (Item item : changed) {
+            itemInvalidations.incrementAndGet(itemSlot(item.getId()));
+            ItemRow cached = items.remove(item.getId());
+            if (cached != null && sameDetails(cached, item)) {
+                continue;
+            }
+            Set<Long> customers = cartsByItem.get(item.getId());
+            if (customers == null) {
+                continue;
+            }
+            affected.addAll(customers);
+            if (item.getPrice() != null) {
+                prices.put(item.getId(), item.getPrice());
+            }
+        }
+        if (affected.isEmpty()) {
+            return;
+        }
+        int repriced = 0;
+        for (Long customerId : affected) {
+            synchronized (stripeOf(customerId)) {
+                CartState cart = carts.get(customerId);
+                if (cart == null) {
+                    continue;
+                }
+                if (reprice(cart, prices)) {
+                    dirtyCustomers.add(customerId);
+                    repriced++;
+                } else {
+                    // Only names or images moved; the lines are the same but the cart as served is not
+                    cart.version = versions.incrementAndGet();
+                }
+            }
+        }
+        if (repriced > 0) {
+            logger.debug("Repriced {} carts after a price change", repriced);
+        }
+    }
+
+    /**
+     * Moves the cart's line snapshots to the given prices, e.g. when checkout found them out of date.
+     */
+    public void reprice(Long customerId, Map<Long, BigDecimal> prices) {
+        withCart(customerId, cart -> {
+            if (reprice(cart, prices)) {
+                dirtyCustomers.add(customerId);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Moves line snapshots to the given prices. The new snapshots are written by the flusher but not logged:
+     * a cart lost in a crash is repriced from the items table when it is loaded again.
+     * @return Whether any line changed.
+     */
+    private boolean reprice(CartState cart, Map<Long, BigDecimal> prices) {
+        boolean changed = false;
+        for (Line line : new ArrayList<>(cart.lines.values())) {
+            BigDecimal price = prices.get(line.itemId());
+            if (price != null && (line.unitPrice() == null || price.compareTo(line.unitPrice()) != 0)) {
+                cart.lines.put(line.itemId(), new Line(line.id(), line.itemId(), line.quantity(), price, line.sellerId()));
+                cart.dirtyLines.put(line.id(), line.itemId());
+                changed = true;
+            }
+        }
+        if (changed) {
+            cart.summary = summarize(cart);
+            cart.version = versions.incrementAndGet();
+        }
+        return changed;
+    }
+
+    /**
+     * Writes every changed line, one batch and transaction per stripe. The log segments are dropped once a
+     * round has written everything; after a failure the carts stay dirty and are retried next round.
+     */
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:200}")
+    public void flushDirty() {
+        List<Long> customers;
+        logLock.writeLock().lock();
+        try {
+            writeAheadLog.seal();
+            customers = new ArrayList<>(dirtyCustomers);
+            dirtyCustomers.removeAll(customers);
+        } finally {
+            logLock.writeLock().unlock();
+        }
+
+        Map<Integer, List<Long>> byStripe = new HashMap<>();
+        for (Long customerId : customers) {
+            byStripe.computeIfAbsent(stripeIndex(customerId), key -> new ArrayList<>()).add(customerId);
+        }
+        boolean failed = false;
+        int written = 0;
+        for (Map.Entry<Integer, List<Long>> stripe : byStripe.entrySet()) {
+            synchronized (stripes[stripe.getKey()]) {
+                List<CartState> flushed = new ArrayList<>();
+                List<LineWrite> lines = new ArrayList<>();
+                for (Long customerId : stripe.getValue()) {
+                    CartState cart = carts.get(customerId);
+                    if (cart != null && !cart.dirtyLines.isEmpty()) {
+                        lines.addAll(pendingWrites(cart));
+                        flushed.add(cart);
+                    }
+                }
+                if (lines.isEmpty()) {
+                    continue;
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> cartWriter.write(lines));
+                    flushed.forEach(cart -> cart.dirtyLines.clear());
+                    written += lines.size();
+                } catch (RuntimeException e) {
+                    failed = true;
+                    dirtyCustomers.addAll(stripe.getValue());
+                    logger.warn("Could not write {} cart lines, will retry: {}", lines.size(), e.getMessage());
+                }
+            }
+        }
+        if (!failed) {
+            writeAheadLog.deleteSealed();
+        }
+        if (written > 0) {
+            logger.debug("Wrote {} cart lines for {} carts", written, customers.size());
+        }
+        evictIdleCarts();
+    }
+
+    private <T> T withCart(Long customerId, Function<CartState, T> action) {
+        T result;
+        CartWriteAheadLog.Batch logged;
+        synchronized (stripeOf(customerId)) {
+            CartState cart = carts.get(customerId);
+            if (cart == null) {
+                cart = load(customerId);
+                carts.put(customerId, cart);
+                if (!cart.dirtyLines.isEmpty()) {
+                    dirtyCustomers.add(customerId);
+                }
+            }
+            cart.lastAccess = System.currentTimeMillis();
+            result = action.apply(cart);
+            logged = cart.logged;
+        }
+        if (logged != null) {
+            awaitLogged(customerId, logged);
+        }
+        return result;
+    }
+
+    /**
+     * Waits, outside the stripe lock, until the cart's last logged change is durable. When the log could not
+     * write it, the cart's changed lines are written to the database instead.
+     */
+    private void awaitLogged(Long customerId, CartWriteAheadLog.Batch logged) {
+        try {
+            writeAheadLog.await(logged);
+        } catch (IOException e) {
+            logger.warn("Cart write-ahead log failed, writing through: {}", e.getMessage());
+            synchronized (stripeOf(customerId)) {
+                CartState cart = carts.get(customerId);
+                // Gone or clean means the flusher has written it meanwhile
+                if (cart != null && !cart.dirtyLines.isEmpty()) {
+                    List<LineWrite> lines = pendingWrites(cart);
+                    transactionTemplate.executeWithoutResult(tx -> cartWriter.write(lines));
+                    cart.dirtyLines.clear();
+                }
+                if (cart != null && cart.logged == logged) {
+                    cart.logged = null;
+                }
+            }
+        }
+    }
+
+    private CartState load(Long customerId) {
+        long cartId = cartWriter.upsertCart(customerId);
+        CartState cart = new CartState(customerId, cartId, versions.incrementAndGet());
+        long[] seen = new long[STRIPES];
+        for (int slot = 0; slot < STRIPES; slot++) {
+            seen[slot] = itemInvalidations.get(slot);
+        }
+        for (CartLineRow row : cartWriter.loadLines(cartId)) {
+            BigDecimal unitPrice = row.unitPrice();
+            // Priced while the cart was not in memory (or never, for a line replayed from the log)
+            if (row.price() != null && (unitPrice == null || unitPrice.compareTo(row.price()) != 0)) {
+                unitPrice = row.price();
+                cart.dirtyLines.put(row.id(), row.itemId());
+            }
+            cart.lines.put(row.itemId(), new Line(row.id(), row.itemId(), row.quantity(), unitPrice, row.sellerId()));
+            index(row.itemId(), customerId);
+            cacheItem(new ItemRow(row.itemId(), row.name(), row.price(), row.imageUrl(), row.sellerId()),
+                    seen[itemSlot(row.itemId())]);
+        }
+        cart.summary = summarize(cart);
+        return cart;
+    }
+
+    /**
+     * Queues the changes in the log and applies them to the cart, or writes them through when the log is
+     * not available. Called under the cart's stripe lock; {@link #withCart} waits for the log afterwards.
+     */
+    private void persist(Long customerId, CartState cart, List<LineWrite> changes) {
+        if (writeBehind) {
+            logLock.readLock().lock();
+            try {
+                cart.logged = writeAheadLog.append(changes);
+                apply(cart, changes, true);
+                dirtyCustomers.add(customerId);
+                return;
+            } catch (IOException e) {
+                logger.warn("Cart write-ahead log failed, writing through: {}", e.getMessage());
+            } finally {
+                logLock.readLock().unlock();
+            }
+        }
+        transactionTemplate.executeWithoutResult(tx -> cartWriter.write(changes));
+        // Already written; a line still dirty from an earlier change is written again with this final state
+        apply(cart, changes, false);
+    }
+
+    private void apply(CartState cart, List<LineWrite> changes, boolean markDirty) {
+        for (LineWrite change : changes) {
+            if (change.quantity() > 0) {
+                Line previous = cart.lines.get(change.itemId());
+                Long sellerId = previous != null ? previous.sellerId() : sellerOf(change.itemId());
+                cart.lines.put(change.itemId(),
+                        new Line(change.id(), change.itemId(), change.quantity(), change.unitPrice(), sellerId));
+                index(change.itemId(), cart.customerId);
+            } else if (cart.lines.remove(change.itemId()) != null) {
+                unindex(change.itemId(), cart.customerId);
+            }
+            if (markDirty) {
+                cart.dirtyLines.put(change.id(), change.itemId());
+            }
+        }
+        cart.summary = summarize(cart);
+        cart.version = versions.incrementAndGet();
+    }
+
+    private static Summary summarize(CartState cart) {
+        int itemCount = 0;
+        BigDecimal subtotal = BigDecimal.ZERO;
+        Map<Long, List<Line>> bySeller = new LinkedHashMap<>();
+        for (Line line : cart.lines.values()) {
+            itemCount += line.quantity();
+            subtotal = subtotal.add(line.lineTotal());
+            bySeller.computeIfAbsent(line.sellerId(), key -> new ArrayList<>()).add(line);
+        }
+        List<SellerTotals> sellers = new ArrayList<>(bySeller.size());
+        for (Map.Entry<Long, List<Line>> seller : bySeller.entrySet()) {
+            List<Long> itemIds = new ArrayList<>();
+            int sellerItems = 0;
+            BigDecimal sellerSubtotal = BigDecimal.ZERO;
+            for (Line line : seller.getValue()) {
+                itemIds.add(line.itemId());
+                sellerItems += line.quantity();
+                sellerSubtotal = sellerSubtotal.add(line.lineTotal());
+            }
+            sellers.add(new SellerTotals(seller.getKey(), List.copyOf(itemIds), sellerItems, sellerSubtotal));
+        }
+        return new Summary(cart.lines.size(), itemCount, subtotal, List.copyOf(sellers));
+    }
+
+    private static List<LineWrite> pendingWrites(CartState cart) {
+        Map<Long, Line> byId = new HashMap<>();
+        for (Line line : cart.lines.values()) {
+            byId.put(line.id(), line);
+        }
+        List<LineWrite> writes = new ArrayList<>(cart.dirtyLines.size());
+        for (Map.Entry<Long, Long> dirty : cart.dirtyLines.entrySet()) {
+            Long lineId = dirty.getKey();
+            Line line = byId.get(lineId);
+            writes.add(line == null
+                    ? new LineWrite(lineId, cart.cartId, dirty.getValue(), 0, null)
+                    : new LineWrite(lineId, cart.cartId, line.itemId(), line.quantity(), line.unitPrice()));
+        }
+        return writes;
+    }
+
+    private static boolean sameDetails(ItemRow cached, Item item) {
+        return Objects.equals(cached.name(), item.getName())
+                && Objects.equals(cached.imageUrl(), item.getImageUrl())
+                && (cached.price() == null ? item.getPrice() == null
+                        : item.getPrice() != null && cached.price().compareTo(item.getPrice()) == 0);
+    }
+
+    private void index(long itemId, Long customerId) {
+        cartsByItem.compute(itemId, (id, customers) -> {
+            Set<Long> updated = customers != null ? customers : ConcurrentHashMap.newKeySet();
+            updated.add(customerId);
+            return updated;
+        });
+    }
+
+    private void unindex(long itemId, Long customerId) {
+        Set<Long> left = cartsByItem.computeIfPresent(itemId, (id, customers) -> {
+            customers.remove(customerId);
+            return customers.isEmpty() ? null : customers;
+        });
+        if (left == null) {
+            // No cart in memory holds the item any more; keeps the cache as small as the carts
+            items.remove(itemId);
+        }
+    }
+
+    private static Line existingLine(CartState cart, Long itemId) {
+        Line line = cart.lines.get(itemId);
+        if (line == null) {
+            throw new IllegalArgumentException("Item not found in cart");
+        }
+        return line;
+    }
+
+    private ItemRow itemRow(long itemId) {
+        ItemRow item = items.get(itemId);
+        if (item == null) {
+            long seen = itemInvalidations.get(itemSlot(itemId));
+            item = cartWriter.findItem(itemId).orElse(null);
+            if (item != null) {
+                cacheItem(item, seen);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Caches a row read while the item's invalidation counter was at {@code seen}. Put first and checked
+     * after: an edit committed meanwhile has either moved the counter by now or will remove the row itself.
+     */
+    private void cacheItem(ItemRow item, long seen) {
+        if (items.size() >= MAX_CACHED_ITEMS) {
+            return;
+        }
+        items.put(item.id(), item);
+        if (itemInvalidations.get(itemSlot(item.id())) != seen) {
+            items.remove(item.id(), item);
+        }
+    }
+
+    private static int itemSlot(long itemId) {
+        return (int) Math.floorMod(itemId, (long) STRIPES);
+    }
+
+    private Long sellerOf(long itemId) {
+        ItemRow item = itemRow(itemId);
+        return item == null ? null : item.sellerId();
+    }
+
+    private CartDTO toDto(CartState cart) {
+        List<CartLineDTO> lines = new ArrayList<>(cart.lines.size());
+        for (Line line : cart.lines.values()) {
+            lines.add(toLineDto(line));
+        }
+        return new CartDTO(cart.cartId, lines, cart.summary.subtotal(), cart.version);
+    }
+
+    private CartLineDTO toLineDto(Line line) {
+        ItemRow item = itemRow(line.itemId());
+        ItemSummaryDTO summary = ItemSummaryDTO.builder()
+                .id(line.itemId())
+                .name(item == null ? null : item.name())
+                .price(line.unitPrice())
+                .imageUrl(item == null ? null : item.imageUrl())
+                .build();
+        return new CartLineDTO(line.id(), summary, line.quantity());
+    }
+
+    private long nextLineId() {
+        synchronized (lineIds) {
+            if (lineIds.isEmpty()) {
+                for (long id : sequenceIdAllocator.allocate("cart_items", "id", LINE_ID_BLOCK)) {
+                    lineIds.add(id);
+                }
+            }
+            return lineIds.poll();
+        }
+    }
+
+    private void evictIdleCarts() {
+        long now = System.currentTimeMillis();
+        if (now - lastEviction < EVICTION_INTERVAL_MILLIS) {
+            return;
+        }
+        lastEviction = now;
+        long idleBefore = now - TimeUnit.MINUTES.toMillis(idleMinutes);
+        int evicted = 0;
+        for (Long customerId : new ArrayList<>(carts.keySet())) {
+            synchronized (stripeOf(customerId)) {
+                CartState cart = carts.get(customerId);
+                if (cart != null && cart.dirtyLines.isEmpty() && cart.lastAccess < idleBefore) {
+                    carts.remove(customerId);
+                    cart.lines.keySet().forEach(itemId -> unindex(itemId, customerId));
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.debug("Dropped {} idle carts from memory", evicted);
+        }
+    }
+
+    private Object stripeOf(Long customerId) {
+        return stripes[stripeIndex(customerId)];
+    }
+
+    private static int stripeIndex(Long customerId) {
+        return Long.hashCode(customerId * 0x9E3779B97F4A7C15L) >>> 26;
+    }
+}
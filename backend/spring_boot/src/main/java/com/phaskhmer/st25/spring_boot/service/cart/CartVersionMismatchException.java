@@ -0,0 +1,18 @@
+package com.phaskhmer.st25.spring_boot.service.cart;
+
+/**
+ * The cart changed since the version the client based its change on (If-Match).
+ */
+public class CartVersionMismatchException extends RuntimeException {
+
+    private final long currentVersion;
+
+    public CartVersionMismatchException(long currentVersion) {
+        super("Cart has changed; current version is " + currentVersion + ".");
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
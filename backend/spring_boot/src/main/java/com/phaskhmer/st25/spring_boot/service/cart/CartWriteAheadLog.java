@@ -0,0 +1,360 @@
+package com.phaskhmer.st25.spring_boot.service.cart;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.repository.jdbc.CartWriter.LineWrite;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Durable record of cart changes that {@link CartStore} has applied in memory but not yet written to the
+ * database.
+ *
+ * Changes are committed in groups: {@link #append(List)} only queues the record and returns its batch, and
+ * {@link #await(Batch)} makes it durable. The first waiter to find no write in progress becomes the leader:
+ * it takes every record queued so far, writes them with one write and (with cart.wal.fsync) one fsync, and
+ * wakes all their waiters. Records queued meanwhile form the next batch, so concurrent requests share
+ * fsyncs instead of taking turns. The log is split into segments: the flusher seals the current segment
+ * when it takes the dirty carts, and deletes the sealed segments once everything they cover is in the
+ * database. Segments left behind by a crash are replayed into the database on the next startup. Records
+ * carry a CRC, so a torn tail ends the replay.
+ */
+@Component
+public class CartWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteAheadLog.class);
+
+    private static final int MAGIC = 0x43415254; // "CART"
+    private static final int LINE_BYTES = 8 + 8 + 8 + 4;
+    private static final String PREFIX = "cart-";
+    private static final String SUFFIX = ".wal";
+
+    @Value("${cart.wal.dir:./data/cart-wal}")
+    private String walDir;
+
+    @Value("${cart.wal.fsync:true}")
+    private boolean fsync;
+
+    private Path directory;
+    private final List<Path> recovered = new ArrayList<>();
+    private final List<Path> sealed = new ArrayList<>();
+
+    private long nextSegment;
+    private Path segment;
+    private FileChannel channel;
+    private boolean segmentEmpty;
+
+    // Records queued since the last group write; all guarded by this log's monitor
+    private Batch open = new Batch();
+    private boolean writing;
+
+    /**
+     * Records committed together. Done once written (or failed); waiters are woken through the log's monitor.
+     */
+    public static final class Batch {
+        private final List<ByteBuffer> records = new ArrayList<>();
+        private boolean done;
+        private IOException failure;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.directory = Paths.get(walDir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+                for (Path existing : segments) {
+                    recovered.add(existing);
+                }
+            }
+            recovered.sort(Comparator.comparingLong(CartWriteAheadLog::sequenceOf));
+            nextSegment = recovered.isEmpty() ? 1 : sequenceOf(recovered.get(recovered.size() - 1)) + 1;
+            openSegment();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not open the cart write-ahead log in " + directory, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    /**
+     * Changes left in the log by the previous run, oldest first.
+     */
+    public List<LineWrite> readRecovered() {
+        List<LineWrite> lines = new ArrayList<>();
+        for (Path file : recovered) {
+            try {
+                readSegment(file, lines);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read cart write-ahead log " + file, e);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Drops the segments of the previous run once their changes are in the database.
+     */
+    public void deleteRecovered() {
+        deleteAll(recovered);
+    }
+
+    /**
+     * Queues one change for the next group write and returns the batch it belongs to; nothing is durable
+     * until {@link #await(Batch)} returns. Records are written in the order they are queued.
+     * @throws IOException when the log is not open, so the caller must write the change through.
+     */
+    public synchronized Batch append(List<LineWrite> lines) throws IOException {
+        if (channel == null) {
+            throw new IOException("Cart write-ahead log is not open");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(4 + lines.size() * LINE_BYTES);
+        payload.putInt(lines.size());
+        for (LineWrite line : lines) {
+            payload.putLong(line.id()).putLong(line.cartId()).putLong(line.itemId()).putInt(line.quantity());
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.remaining());
+        record.putInt(payload.remaining()).putInt((int) crc.getValue()).put(payload).flip();
+        open.records.add(record);
+        return open;
+    }
+
+    /**
+     * Blocks until the batch is on disk, writing it (and whatever else is queued) if no other thread is.
+     * @throws IOException when the batch could not be written; its changes are not durable.
+     */
+    public void await(Batch batch) throws IOException {
+        while (true) {
+            Batch leading;
+            FileChannel target;
+            synchronized (this) {
+                while (!batch.done && writing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the cart write-ahead log", e);
+                    }
+                }
+                if (batch.done) {
+                    if (batch.failure != null) {
+                        throw batch.failure;
+                    }
+                    return;
+                }
+                leading = open;
+                open = new Batch();
+                writing = true;
+                target = channel;
+            }
+            // The write and fsync run outside the monitor, so the next batch fills up meanwhile
+            IOException failure = target == null ? new IOException("Cart write-ahead log is not open") : null;
+            if (failure == null) {
+                try {
+                    writeBatch(target, leading);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            synchronized (this) {
+                finish(leading, failure);
+                writing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void writeBatch(FileChannel target, Batch batch) throws IOException {
+        long position = target.position();
+        try {
+            ByteBuffer[] records = batch.records.toArray(new ByteBuffer[0]);
+            long remaining = 0;
+            for (ByteBuffer record : records) {
+                remaining += record.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= target.write(records);
+            }
+            if (fsync) {
+                target.force(false);
+            }
+        } catch (IOException e) {
+            // Cut the partial batch off so later appends stay readable; failing that, stop using the segment
+            synchronized (this) {
+                try {
+                    target.truncate(position);
+                    target.position(position);
+                } catch (IOException truncateFailure) {
+                    if (target == channel) {
+                        closeChannel();
+                    }
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void finish(Batch batch, IOException failure) {
+        batch.failure = failure;
+        batch.done = true;
+        if (failure == null && !batch.records.isEmpty()) {
+            segmentEmpty = false;
+        }
+        batch.records.clear();
+    }
+
+    /**
+     * Starts a new segment. Everything appended before this call is written to a sealed segment first.
+     */
+    public synchronized void seal() {
+        while (writing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!open.records.isEmpty()) {
+            // Written here so the sealed segment holds every change of the carts the flusher takes next
+            Batch queued = open;
+            open = new Batch();
+            IOException failure = channel == null ? new IOException("Cart write-ahead log is not open") : null;
+            if (failure == null) {
+                try {
+                    writeBatch(channel, queued);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            finish(queued, failure);
+            notifyAll();
+        }
+        if (channel != null && segmentEmpty) {
+            return;
+        }
+        closeChannel();
+        if (segment != null) {
+            sealed.add(segment);
+        }
+        try {
+            openSegment();
+        } catch (IOException e) {
+            // Appends fail (and fall back to synchronous writes) until a later seal manages to open one
+            logger.warn("Could not open a new cart write-ahead log segment: {}", e.getMessage());
+            segment = null;
+        }
+    }
+
+    /**
+     * Drops the sealed segments once every change in them has been written to the database.
+     */
+    public synchronized void deleteSealed() {
+        deleteAll(sealed);
+    }
+
+    private void openSegment() throws IOException {
+        segment = directory.resolve(PREFIX + nextSegment++ + SUFFIX);
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+        segmentEmpty = true;
+        if (fsync) {
+            // The new file's directory entry must be durable too, or a crash can lose the whole segment
+            try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+                dir.force(true);
+            } catch (IOException e) {
+                // Not supported on every platform (e.g. Windows)
+                logger.debug("Could not fsync the cart write-ahead log directory: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Could not close cart write-ahead log segment {}: {}", segment, e.getMessage());
+        }
+        channel = null;
+    }
+
+    private static void readSegment(Path file, List<LineWrite> lines) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.remaining() < 4 || data.getInt() != MAGIC) {
+            logger.warn("Cart write-ahead log {} has no header; skipping it", file);
+            return;
+        }
+        while (data.remaining() >= 8) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 4 || length > data.remaining()) {
+                data.position(start);
+                break;
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                data.position(start);
+                break;
+            }
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                // Prices are not logged; a line replayed without one is repriced when its cart is loaded
+                lines.add(new LineWrite(payload.getLong(), payload.getLong(), payload.getLong(), payload.getInt(), null));
+            }
+            data.position(data.position() + length);
+        }
+        if (data.hasRemaining()) {
+            logger.warn("Cart write-ahead log {} ends in a partial record; ignoring the last {} bytes", file, data.remaining());
+        }
+    }
+
+    private static void deleteAll(List<Path> files) {
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Could not delete cart write-ahead log {}: {}", file, e.getMessage());
+            }
+        }
+        files.clear();
+    }
+
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes and decodes the opaque cursor used by the keyset-paginated listing feed.
+ * The cursor wraps the id of the last listing the client has seen.
+ */
+public final class ListingCursor {
+
+    private static final String PREFIX = "v1:";
+
+    private ListingCursor() {
+    }
+
+    public static String encode(Long lastSeenId) {
+        String raw = PREFIX + lastSeenId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the last seen listing id, or null when the cursor is blank (first page).
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    public static Long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            if (!raw.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid listing cursor: " + cursor);
+            }
+            return Long.valueOf(raw.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            // Covers bad Base64 as well as NumberFormatException
+            throw new IllegalArgumentException("Invalid listing cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.dto.CacheStatsDTO;
+
+/**
+ * Bounded in-process cache of serialized listing detail JSON, keyed by listing id.
+ * Entries are evicted least-recently-used once the cache is full, and expire after a fixed TTL.
+ *
+ * Each entry remembers the listing version (see {@link ListingVersionRegistry}) read before it was loaded,
+ * and a lookup only hits an entry of the current version. A put that lost a race against a writer is
+ * stored under the old version and never served. Write paths still call {@link #invalidate(Long)} to
+ * free the memory early.
+ */
+@Component
+public class ListingDetailCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<Long, Entry> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    private record Entry(byte[] json, long version, long createdAt) {
+    }
+
+    public ListingDetailCache(
+            @Value("${listing.cache.max-entries:1000}") int maxEntries,
+            @Value("${listing.cache.ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        // accessOrder = true turns the map into an LRU list
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > ListingDetailCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized byte[] get(Long listingId, long version) {
+        Entry entry = entries.get(listingId);
+        if (entry == null || entry.version() != version) {
+            misses++;
+            return null;
+        }
+        if (isExpired(entry, System.currentTimeMillis())) {
+            entries.remove(listingId);
+            expirations++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.json();
+    }
+
+    /**
+     * @param version The listing version read before the JSON was loaded.
+     */
+    public synchronized void put(Long listingId, long version, byte[] json) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        entries.put(listingId, new Entry(json, version, System.currentTimeMillis()));
+    }
+
+    public synchronized void invalidate(Long listingId) {
+        entries.remove(listingId);
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Drops expired entries so they don't sit in memory until the next lookup.
+     */
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next(), now)) {
+                it.remove();
+                expirations++;
+            }
+        }
+    }
+
+    public synchronized CacheStatsDTO stats() {
+        purgeExpired();
+        return CacheStatsDTO.builder()
+                .name("listingDetail")
+                .size(entries.size())
+                .capacity(maxEntries)
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .expirations(expirations)
+                .build();
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt() > ttlMillis;
+    }
+}
@@ -0,0 +1,126 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.phaskhmer.st25.spring_boot.dto.listing.ItemDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingExportDTO;
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.repository.ItemRepository;
+import com.phaskhmer.st25.spring_boot.repository.ListingRepository;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Writes every listing as one JSON object per line while reading them through a forward-only cursor.
+ *
+ * Rows are handled in chunks: the listing columns come from the cursor, then tags and items for the
+ * whole chunk are loaded with one query each, written out, and dropped from the persistence context.
+ * Memory use depends on the chunk size, not on the size of the table.
+ */
+@Service
+public class ListingExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListingExporter.class);
+    private static final int CHUNK_SIZE = 500;
+
+    private final ListingRepository listingRepository;
+    private final ItemRepository itemRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ListingExporter(ListingRepository listingRepository, ItemRepository itemRepository, EntityManager entityManager,
+                           ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.listingRepository = listingRepository;
+        this.itemRepository = itemRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void export(OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        try {
+            long written = readOnlyTransaction.execute(status -> writeAll(out));
+            logger.info("Exported {} listings in {} ms", written, System.currentTimeMillis() - started);
+        } catch (UncheckedIOException e) {
+            // Usually the client went away mid-stream
+            throw e.getCause();
+        }
+    }
+
+    private long writeAll(OutputStream out) {
+        long written = 0;
+        try (Stream<ListingExportDTO> rows = listingRepository.streamExportRows();
+             SequenceWriter writer = objectMapper.writer()
+                     .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                     .withRootValueSeparator("\n")
+                     .writeValues(out)) {
+            Iterator<ListingExportDTO> cursor = rows.iterator();
+            Map<Long, ListingExportDTO> chunk = new LinkedHashMap<>();
+            while (cursor.hasNext()) {
+                ListingExportDTO row = cursor.next();
+                chunk.put(row.getId(), row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    written += writeChunk(chunk, writer);
+                }
+            }
+            written += writeChunk(chunk, writer);
+            if (written > 0) {
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return written;
+    }
+
+    private int writeChunk(Map<Long, ListingExportDTO> chunk, SequenceWriter writer) throws IOException {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        for (Object[] tag : listingRepository.findTagsByListingIdIn(chunk.keySet())) {
+            chunk.get((Long) tag[0]).getTags().add((String) tag[1]);
+        }
+        for (Item item : itemRepository.findByListingIdInOrderById(chunk.keySet())) {
+            chunk.get(item.getListing().getId()).getItems().add(toItemDTO(item));
+        }
+        List<ListingExportDTO> lines = new ArrayList<>(chunk.values());
+        for (ListingExportDTO line : lines) {
+            writer.write(line);
+        }
+        writer.flush();
+
+        // Nothing loaded for this chunk is needed again
+        entityManager.clear();
+        chunk.clear();
+        return lines.size();
+    }
+
+    private static ItemDTO toItemDTO(Item item) {
+        ItemDTO dto = new ItemDTO();
+        dto.setId(item.getId());
+        dto.setName(item.getName());
+        dto.setPrice(item.getPrice());
+        dto.setImageUrl(item.getImageUrl());
+        return dto;
+    }
+}
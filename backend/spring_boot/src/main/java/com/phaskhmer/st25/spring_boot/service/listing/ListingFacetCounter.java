@@ -0,0 +1,105 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingFacetsDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingPriceSummaryDTO;
+import com.phaskhmer.st25.spring_boot.model.Category;
+
+/**
+ * Incrementally maintained facet counts for the public feed.
+ * Each listing contributes to one category and one price bucket (by its cheapest item);
+ * the contribution is remembered so an update or removal can take it back out.
+ */
+@Component
+public class ListingFacetCounter {
+
+    // Lower bounds of the price buckets; the last bucket is open-ended
+    private static final BigDecimal[] BUCKET_LOWER_BOUNDS = {
+            new BigDecimal("0"),
+            new BigDecimal("5"),
+            new BigDecimal("10"),
+            new BigDecimal("25"),
+            new BigDecimal("50"),
+            new BigDecimal("100")
+    };
+
+    private record Contribution(Long categoryId, int bucket) {
+    }
+
+    private final Map<Long, Contribution> byListing = new HashMap<>();
+    private final Map<Long, Long> categoryCounts = new HashMap<>();
+    private final long[] bucketCounts = new long[BUCKET_LOWER_BOUNDS.length];
+
+    public synchronized void record(Long listingId, Long categoryId, BigDecimal minPrice) {
+        remove(listingId);
+        Contribution contribution = new Contribution(categoryId, bucketOf(minPrice));
+        byListing.put(listingId, contribution);
+        if (categoryId != null) {
+            categoryCounts.merge(categoryId, 1L, Long::sum);
+        }
+        if (contribution.bucket() >= 0) {
+            bucketCounts[contribution.bucket()]++;
+        }
+    }
+
+    public synchronized void remove(Long listingId) {
+        Contribution previous = byListing.remove(listingId);
+        if (previous == null) {
+            return;
+        }
+        if (previous.categoryId() != null) {
+            categoryCounts.computeIfPresent(previous.categoryId(), (id, count) -> count > 1 ? count - 1 : null);
+        }
+        if (previous.bucket() >= 0) {
+            bucketCounts[previous.bucket()]--;
+        }
+    }
+
+    public synchronized void replaceAll(List<ListingPriceSummaryDTO> listings) {
+        byListing.clear();
+        categoryCounts.clear();
+        Arrays.fill(bucketCounts, 0);
+        for (ListingPriceSummaryDTO listing : listings) {
+            record(listing.getListingId(), listing.getCategoryId(), listing.getMinPrice());
+        }
+    }
+
+    /**
+     * @param categories Used to label the category facets; categories without listings are listed with 0.
+     */
+    public synchronized ListingFacetsDTO snapshot(List<Category> categories) {
+        List<ListingFacetsDTO.CategoryFacet> categoryFacets = new ArrayList<>();
+        for (Category category : categories) {
+            long count = categoryCounts.getOrDefault(category.getId(), 0L);
+            categoryFacets.add(new ListingFacetsDTO.CategoryFacet(category.getId(), category.getName(), count));
+        }
+
+        List<ListingFacetsDTO.PriceBucketFacet> bucketFacets = new ArrayList<>();
+        for (int i = 0; i < BUCKET_LOWER_BOUNDS.length; i++) {
+            BigDecimal upper = i + 1 < BUCKET_LOWER_BOUNDS.length ? BUCKET_LOWER_BOUNDS[i + 1] : null;
+            bucketFacets.add(new ListingFacetsDTO.PriceBucketFacet(BUCKET_LOWER_BOUNDS[i], upper, bucketCounts[i]));
+        }
+
+        return new ListingFacetsDTO(categoryFacets, bucketFacets);
+    }
+
+    private static int bucketOf(BigDecimal price) {
+        if (price == null || price.signum() < 0) {
+            return -1;
+        }
+        for (int i = BUCKET_LOWER_BOUNDS.length - 1; i >= 0; i--) {
+            if (price.compareTo(BUCKET_LOWER_BOUNDS[i]) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
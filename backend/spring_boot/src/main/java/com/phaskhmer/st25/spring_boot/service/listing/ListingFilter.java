@@ -0,0 +1,54 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+/**
+ * Optional filters for the public feed. Null fields are not applied.
+ * A listing matches the price range when at least one of its items does.
+ */
+public record ListingFilter(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, String tag) {
+
+    public boolean isEmpty() {
+        return categoryId == null && minPrice == null && maxPrice == null && (tag == null || tag.isBlank());
+    }
+
+    public Specification<Listing> toSpecification() {
+        return (root, query, cb) -> {
+            var predicate = cb.conjunction();
+
+            if (categoryId != null) {
+                predicate = cb.and(predicate, cb.equal(root.get("category").get("id"), categoryId));
+            }
+
+            if (tag != null && !tag.isBlank()) {
+                predicate = cb.and(predicate, cb.isMember(tag.trim(), root.<Collection<String>>get("tags")));
+            }
+
+            if (minPrice != null || maxPrice != null) {
+                // EXISTS (item of this listing within the range), served by the (listing_id, price) index
+                Subquery<Long> priced = query.subquery(Long.class);
+                Root<Item> item = priced.from(Item.class);
+                var inRange = cb.equal(item.get("listing"), root);
+                if (minPrice != null) {
+                    inRange = cb.and(inRange, cb.greaterThanOrEqualTo(item.get("price"), minPrice));
+                }
+                if (maxPrice != null) {
+                    inRange = cb.and(inRange, cb.lessThanOrEqualTo(item.get("price"), maxPrice));
+                }
+                priced.select(item.get("id")).where(inRange);
+                predicate = cb.and(predicate, cb.exists(priced));
+            }
+
+            return predicate;
+        };
+    }
+}
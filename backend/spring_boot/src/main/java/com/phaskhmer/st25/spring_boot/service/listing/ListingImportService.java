@@ -0,0 +1,362 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingImportReportDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingImportRowDTO;
+import com.phaskhmer.st25.spring_boot.model.Category;
+import com.phaskhmer.st25.spring_boot.model.Customer;
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+import com.phaskhmer.st25.spring_boot.model.listing.ListingStatus;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.ListingBulkWriter;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.SequenceIdAllocator;
+import com.phaskhmer.st25.spring_boot.service.CustomerService;
+import com.phaskhmer.st25.spring_boot.service.storage.FileStorageService;
+
+/**
+ * Bulk listing import from an NDJSON file (one listing per line) plus an optional zip of images.
+ *
+ * Lines are parsed and validated one at a time while the file streams in. Valid rows are collected into
+ * chunks; each chunk gets its ids from the table sequences in one call per table and is written with JDBC
+ * batches in its own transaction. A bad row is reported and skipped without failing the rest of the import;
+ * when the database rejects a chunk, it is split in halves until the offending rows are isolated.
+ */
+@Service
+public class ListingImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListingImportService.class);
+
+    private static final int CHUNK_SIZE = 500;
+    private static final int MAX_REPORTED_ERRORS = 500;
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final long MAX_IMAGE_BYTES = 10L * 1024 * 1024;
+    private static final long DEFAULT_STATUS_ID = 1L;
+
+    private final ObjectMapper objectMapper;
+    private final ListingBulkWriter listingBulkWriter;
+    private final SequenceIdAllocator sequenceIdAllocator;
+    private final FileStorageService fileStorageService;
+    private final ListingService listingService;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final CustomerService customerService;
+    private final TransactionTemplate transactionTemplate;
+
+    public ListingImportService(ObjectMapper objectMapper, ListingBulkWriter listingBulkWriter, SequenceIdAllocator sequenceIdAllocator,
+                                FileStorageService fileStorageService, ListingService listingService,
+                                ReferenceDataRegistry referenceDataRegistry, CustomerService customerService,
+                                PlatformTransactionManager transactionManager) {
+        this.objectMapper = objectMapper;
+        this.listingBulkWriter = listingBulkWriter;
+        this.sequenceIdAllocator = sequenceIdAllocator;
+        this.fileStorageService = fileStorageService;
+        this.listingService = listingService;
+        this.referenceDataRegistry = referenceDataRegistry;
+        this.customerService = customerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param rows   NDJSON content, read once from start to end.
+     * @param images Archive holding the images named by the rows, or null when the rows name no images.
+     */
+    public ListingImportReportDTO importListings(Long sellerId, InputStream rows, ZipFile images) throws IOException {
+        ImportRun run = new ImportRun(customerService.getSeller(sellerId), images);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(rows, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                run.lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                run.rowsRead++;
+                run.accept(line);
+                if (run.pending.size() == CHUNK_SIZE) {
+                    run.flush();
+                }
+            }
+        }
+        run.flush();
+
+        long elapsed = Math.max(1, System.currentTimeMillis() - run.started);
+        logger.info("Imported {} listings ({} items) for seller {} in {} ms, {} rows rejected",
+                run.listingsImported, run.itemsImported, sellerId, elapsed, run.rowsFailed);
+        return ListingImportReportDTO.builder()
+                .rowsRead(run.rowsRead)
+                .listingsImported(run.listingsImported)
+                .itemsImported(run.itemsImported)
+                .rowsFailed(run.rowsFailed)
+                .errors(run.errors)
+                .errorsTruncated(run.rowsFailed > run.errors.size())
+                .elapsedMillis(elapsed)
+                .itemsPerSecond(run.itemsImported * 1000 / elapsed)
+                .build();
+    }
+
+    /**
+     * State of one import: lookups loaded once, the chunk being filled and the running totals.
+     */
+    private final class ImportRun {
+        private final long started = System.currentTimeMillis();
+        private final Customer seller;
+        private final ZipFile images;
+
+        // Archive entry name -> stored file name, so an image shared by several rows is stored once
+        private final Map<String, String> storedImages = new HashMap<>();
+        private final List<String> storedInChunk = new ArrayList<>();
+        private final List<Listing> pending = new ArrayList<>();
+        private final List<Long> pendingLines = new ArrayList<>();
+
+        private final List<ListingImportReportDTO.RowError> errors = new ArrayList<>();
+        private long lineNumber;
+        private long rowsRead;
+        private long rowsFailed;
+        private long listingsImported;
+        private long itemsImported;
+
+        private ImportRun(Customer seller, ZipFile images) {
+            this.seller = seller;
+            this.images = images;
+        }
+
+        private void accept(String line) {
+            ListingImportRowDTO row;
+            try {
+                row = objectMapper.readValue(line, ListingImportRowDTO.class);
+            } catch (JsonProcessingException e) {
+                reject(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                return;
+            }
+
+            String problem = validate(row);
+            if (problem != null) {
+                reject(lineNumber, problem);
+                return;
+            }
+
+            try {
+                pending.add(toListing(row));
+                pendingLines.add(lineNumber);
+            } catch (IllegalArgumentException e) {
+                reject(lineNumber, e.getMessage());
+            }
+        }
+
+        private String validate(ListingImportRowDTO row) {
+            if (isBlank(row.getTitle()) || row.getTitle().length() > MAX_TEXT_LENGTH) {
+                return "title is required (at most " + MAX_TEXT_LENGTH + " characters)";
+            }
+            if (row.getCategoryId() != null && !referenceDataRegistry.hasCategory(row.getCategoryId())) {
+                return "Category ID not found: " + row.getCategoryId();
+            }
+            if (row.getStatusId() != null && !referenceDataRegistry.hasStatus(row.getStatusId())) {
+                return "Status ID not found: " + row.getStatusId();
+            }
+            if (row.getTags() != null) {
+                for (String tag : row.getTags()) {
+                    if (isBlank(tag) || tag.length() > MAX_TEXT_LENGTH) {
+                        return "tags must be non-empty strings of at most " + MAX_TEXT_LENGTH + " characters";
+                    }
+                }
+            }
+            if (row.getItems() == null || row.getItems().isEmpty()) {
+                return "a listing needs at least one item";
+            }
+            String imageProblem = checkImage(row.getImage());
+            if (imageProblem != null) {
+                return imageProblem;
+            }
+            for (int i = 0; i < row.getItems().size(); i++) {
+                ListingImportRowDTO.Item item = row.getItems().get(i);
+                if (item == null || isBlank(item.getName()) || item.getName().length() > MAX_TEXT_LENGTH) {
+                    return "items[" + i + "].name is required (at most " + MAX_TEXT_LENGTH + " characters)";
+                }
+                if (item.getPrice() == null || item.getPrice().compareTo(BigDecimal.ZERO) < 0) {
+                    return "items[" + i + "].price must be zero or more";
+                }
+                imageProblem = checkImage(item.getImage());
+                if (imageProblem != null) {
+                    return imageProblem;
+                }
+            }
+            return null;
+        }
+
+        // Checked up front so a row never leaves half of its images stored
+        private String checkImage(String entryName) {
+            if (isBlank(entryName) || storedImages.containsKey(entryName)) {
+                return null;
+            }
+            if (images == null) {
+                return "Image '" + entryName + "' named but no image archive was uploaded";
+            }
+            ZipEntry entry = images.getEntry(entryName);
+            if (entry == null || entry.isDirectory()) {
+                return "Image '" + entryName + "' not found in the archive";
+            }
+            if (entry.getSize() > MAX_IMAGE_BYTES) {
+                return "Image '" + entryName + "' is larger than 10MB";
+            }
+            return null;
+        }
+
+        private Listing toListing(ListingImportRowDTO row) {
+            Category category = null;
+            if (row.getCategoryId() != null) {
+                category = new Category();
+                category.setId(row.getCategoryId());
+            }
+            ListingStatus status = new ListingStatus();
+            status.setId(row.getStatusId() != null ? row.getStatusId() : DEFAULT_STATUS_ID);
+
+            Listing listing = Listing.builder()
+                    .seller(seller)
+                    .title(row.getTitle().trim())
+                    .image(storeImage(row.getImage()))
+                    .category(category)
+                    .status(status)
+                    .tags(row.getTags() != null ? row.getTags().stream().map(String::trim).toList() : List.of())
+                    .build();
+
+            List<Item> items = new ArrayList<>(row.getItems().size());
+            for (ListingImportRowDTO.Item source : row.getItems()) {
+                items.add(Item.builder()
+                        .name(source.getName().trim())
+                        .price(source.getPrice())
+                        .imageUrl(storeImage(source.getImage()))
+                        .listing(listing)
+                        .build());
+            }
+            listing.setItems(items);
+            return listing;
+        }
+
+        private String storeImage(String entryName) {
+            if (isBlank(entryName)) {
+                return null;
+            }
+            String stored = storedImages.get(entryName);
+            if (stored != null) {
+                return stored;
+            }
+            ZipEntry entry = images.getEntry(entryName);
+            try (InputStream content = images.getInputStream(entry)) {
+                String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+                stored = fileStorageService.storeFile(content, fileName);
+            } catch (IOException | RuntimeException e) {
+                // The storage service wraps write failures (and corrupt entry data) in a RuntimeException
+                throw new IllegalArgumentException("Image '" + entryName + "' could not be read: " + e.getMessage());
+            }
+            storedImages.put(entryName, stored);
+            storedInChunk.add(entryName);
+            return stored;
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            assignIds(pending);
+            List<Listing> saved = new ArrayList<>(pending.size());
+            insertOrSplit(pending, pendingLines, saved);
+            discardUnusedChunkImages(saved);
+            pending.clear();
+            pendingLines.clear();
+            storedInChunk.clear();
+        }
+
+        /**
+         * Inserts the listings in one transaction. If the database rejects them, retries each half on its
+         * own, so only the rows that actually violate a constraint are reported.
+         */
+        private void insertOrSplit(List<Listing> listings, List<Long> lines, List<Listing> saved) {
+            try {
+                transactionTemplate.executeWithoutResult(tx -> listingBulkWriter.insert(listings));
+            } catch (DataAccessException e) {
+                if (listings.size() == 1) {
+                    String cause = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                    logger.debug("Import row on line {} rejected by the database: {}", lines.get(0), cause);
+                    reject(lines.get(0), "Could not be saved: " + cause);
+                    return;
+                }
+                int half = listings.size() / 2;
+                insertOrSplit(listings.subList(0, half), lines.subList(0, half), saved);
+                insertOrSplit(listings.subList(half, listings.size()), lines.subList(half, lines.size()), saved);
+                return;
+            }
+            listingService.onListingsImported(listings);
+            listingsImported += listings.size();
+            itemsImported += listings.stream().mapToLong(listing -> listing.getItems().size()).sum();
+            saved.addAll(listings);
+        }
+
+        private void assignIds(List<Listing> listings) {
+            int itemCount = listings.stream().mapToInt(listing -> listing.getItems().size()).sum();
+            long[] listingIds = sequenceIdAllocator.allocate("listings", "id", listings.size());
+            long[] itemIds = sequenceIdAllocator.allocate("items", "id", itemCount);
+            int nextItem = 0;
+            for (int i = 0; i < listings.size(); i++) {
+                Listing listing = listings.get(i);
+                listing.setId(listingIds[i]);
+                for (Item item : listing.getItems()) {
+                    item.setId(itemIds[nextItem++]);
+                }
+            }
+        }
+
+        // Images stored for this chunk that no saved listing refers to
+        private void discardUnusedChunkImages(List<Listing> saved) {
+            Set<String> used = new HashSet<>();
+            for (Listing listing : saved) {
+                used.add(listing.getImage());
+                for (Item item : listing.getItems()) {
+                    used.add(item.getImageUrl());
+                }
+            }
+            List<String> fileNames = new ArrayList<>();
+            for (String entryName : storedInChunk) {
+                String stored = storedImages.get(entryName);
+                if (!used.contains(stored)) {
+                    storedImages.remove(entryName);
+                    fileNames.add(stored);
+                }
+            }
+            fileStorageService.deleteFiles(fileNames);
+        }
+
+        private void reject(long line, String message) {
+            rowsFailed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ListingImportReportDTO.RowError(line, message));
+            }
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
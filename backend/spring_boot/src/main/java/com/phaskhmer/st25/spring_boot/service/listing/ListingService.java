@@ -1,18 +1,37 @@
 package com.phaskhmer.st25.spring_boot.service.listing;
 
 // ... imports ...
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import com.phaskhmer.st25.spring_boot.model.Customer;
 import com.phaskhmer.st25.spring_boot.repository.CustomerRepository;
 import com.phaskhmer.st25.spring_boot.service.CustomerService;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCursorPageDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingFacetsDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingFilterPageDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSearchResultDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.SearchIndexStatsDTO;
+import com.phaskhmer.st25.spring_boot.dto.seller.SellerListingSummaryDTO;
 import com.phaskhmer.st25.spring_boot.model.Category;
 import com.phaskhmer.st25.spring_boot.model.listing.Item;
 import com.phaskhmer.st25.spring_boot.model.listing.Listing;
@@ -20,6 +39,10 @@ import com.phaskhmer.st25.spring_boot.model.listing.ListingStatus;
 import com.phaskhmer.st25.spring_boot.repository.CategoryRepository;
 import com.phaskhmer.st25.spring_boot.repository.ListingRepository;
 import com.phaskhmer.st25.spring_boot.repository.ListingStatusRepository;
+import com.phaskhmer.st25.spring_boot.repository.jdbc.ListingPatchWriter;
+import com.phaskhmer.st25.spring_boot.service.cart.CartStore;
+import com.phaskhmer.st25.spring_boot.service.search.ListingSearchIndex;
+import com.phaskhmer.st25.spring_boot.service.search.ListingSearchService;
 
 @Service
 public class ListingService {
@@ -29,26 +52,46 @@ public class ListingService {
     private final ListingStatusRepository listingStatusRepository;
     private final CustomerRepository customerRepository;
     private final CustomerService customerService;
+    private final ListingDetailCache listingDetailCache;
+    private final ListingVersionRegistry listingVersionRegistry;
+    private final ObjectMapper objectMapper;
+    private final ListingSearchService listingSearchService;
+    private final ListingFacetCounter listingFacetCounter;
+    private final ReferenceDataRegistry referenceDataRegistry;
+    private final ListingPatchWriter listingPatchWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final CartStore cartStore;
 
 
 
     // Inject repositories
-    public ListingService(ListingRepository listingRepository, CategoryRepository categoryRepository, ListingStatusRepository listingStatusRepository, CustomerRepository customerRepository, CustomerService customerService) {
+    public ListingService(ListingRepository listingRepository, CategoryRepository categoryRepository, ListingStatusRepository listingStatusRepository, CustomerRepository customerRepository, CustomerService customerService, ListingDetailCache listingDetailCache, ObjectMapper objectMapper, ListingSearchService listingSearchService, ListingFacetCounter listingFacetCounter, ListingVersionRegistry listingVersionRegistry, ReferenceDataRegistry referenceDataRegistry, ListingPatchWriter listingPatchWriter, PlatformTransactionManager transactionManager, CartStore cartStore) {
         this.listingRepository = listingRepository;
         this.categoryRepository = categoryRepository;
         this.listingStatusRepository = listingStatusRepository;
         this.customerRepository = customerRepository;
         this.customerService = customerService;
+        this.listingDetailCache = listingDetailCache;
+        this.listingVersionRegistry = listingVersionRegistry;
+        this.objectMapper = objectMapper;
+        this.listingSearchService = listingSearchService;
+        this.listingFacetCounter = listingFacetCounter;
+        this.referenceDataRegistry = referenceDataRegistry;
+        this.listingPatchWriter = listingPatchWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.cartStore = cartStore;
     }
 
-    // Replace the simulated lookup with repository lookup
+    // Existence is checked against the in-memory registry; the listing only needs an FK reference (no select)
     private Category findCategoryById(Long id) {
-        // Use the repository method (adjust based on your actual Category model/repository)
-        return categoryRepository.findById(id).orElse(null);
+        return referenceDataRegistry.hasCategory(id) ? categoryRepository.getReferenceById(id) : null;
     }
 
     private ListingStatus findListingStatusById(Long id) {
-        return listingStatusRepository.findById(id).orElse(null);
+        return referenceDataRegistry.hasStatus(id) ? listingStatusRepository.getReferenceById(id) : null;
     }
 
 
@@ -75,7 +118,6 @@ public class ListingService {
         }
 
         ListingStatus status = null;
-        statusID = 1l;
         if (statusID != null) {
             status = findListingStatusById(statusID);
             if (status == null) {
@@ -100,7 +142,81 @@ public class ListingService {
         }
 
         // 3. Persist the Listing (which cascades and saves the Items)
-        return listingRepository.save(newListing);
+        Listing savedListing = listingRepository.save(newListing);
+
+        // 4. Drop any cached view of this listing, make it searchable and count it in the facets
+        afterListingWritten(savedListing);
+        return savedListing;
+    }
+
+    /**
+     * Changes only the given fields of one of the seller's listings (null means unchanged) in one UPDATE,
+     * then refreshes every cached view of it.
+     *
+     * @param tags Replaces the tag list when not null.
+     * @return The updated listing, or empty when the seller has no listing with that id.
+     * @throws IllegalArgumentException when the title is blank or the category or status does not exist.
+     */
+    public Optional<Listing> updateListing(Long sellerId, Long listingId, String title, String thumbnailPath,
+                                           Long categoryId, Long statusId, List<String> tags) {
+        if (title != null && title.isBlank()) {
+            throw new IllegalArgumentException("Title cannot be blank.");
+        }
+        if (categoryId != null && !referenceDataRegistry.hasCategory(categoryId)) {
+            throw new IllegalArgumentException("Category ID provided but not found: " + categoryId);
+        }
+        if (statusId != null && !referenceDataRegistry.hasStatus(statusId)) {
+            throw new IllegalArgumentException("Status ID provided but not found: " + statusId);
+        }
+        Boolean found = transactionTemplate.execute(tx -> listingPatchWriter.updateListing(
+                listingId, sellerId, title, thumbnailPath, statusId, categoryId, tags));
+        return Boolean.TRUE.equals(found) ? reloadAfterUpdate(listingId) : Optional.empty();
+    }
+
+    /**
+     * Changes only the given fields of one item on one of the seller's listings (null means unchanged).
+     *
+     * @return The updated listing, or empty when the item is not on one of the seller's listings.
+     * @throws IllegalArgumentException when the name is blank or the price negative.
+     */
+    public Optional<Listing> updateItem(Long sellerId, Long listingId, Long itemId, String name, BigDecimal price,
+                                        String imagePath) {
+        if (name != null && name.isBlank()) {
+            throw new IllegalArgumentException("Item name cannot be blank.");
+        }
+        if (price != null && price.signum() < 0) {
+            throw new IllegalArgumentException("Price cannot be negative.");
+        }
+        Boolean found = transactionTemplate.execute(tx -> listingPatchWriter.updateItem(
+                listingId, itemId, sellerId, name, price, imagePath));
+        return Boolean.TRUE.equals(found) ? reloadAfterUpdate(listingId) : Optional.empty();
+    }
+
+    // Runs after commit, so a reader can never cache the old version again once it is invalidated
+    private Optional<Listing> reloadAfterUpdate(Long listingId) {
+        Optional<Listing> listing = listingRepository.findById(listingId);
+        listing.ifPresent(this::afterListingWritten);
+        return listing;
+    }
+
+    /**
+     * Runs the post-write hooks for listings inserted outside JPA (bulk import).
+     * The listings only need id, title, tags, category id and items filled in.
+     */
+    public void onListingsImported(List<Listing> listings) {
+        for (Listing listing : listings) {
+            afterListingWritten(listing);
+        }
+    }
+
+    private void afterListingWritten(Listing listing) {
+        listingDetailCache.invalidate(listing.getId());
+        listingVersionRegistry.touch(listing.getId());
+        listingSearchService.indexListing(listing);
+        recordFacets(listing);
+        if (listing.getItems() != null) {
+            cartStore.onItemsChanged(listing.getItems());
+        }
     }
 
     public Page<Listing> getPublicListings(int page, int size) {
@@ -109,21 +225,178 @@ public class ListingService {
         return listingRepository.findAll(pageable);
     }
 
+    /**
+     * Filtered page of the feed (newest first) plus the facet counts.
+     * Filters run as one query with an EXISTS on items, backed by the category, tag and (listing_id, price) indexes.
+     */
+    public ListingFilterPageDTO getFilteredPublicListings(ListingFilter filter, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
+        Page<Listing> listings = listingRepository.findAll(filter.toSpecification(), pageable);
+
+        return ListingFilterPageDTO.builder()
+                .content(listings.getContent())
+                .number(listings.getNumber())
+                .size(listings.getSize())
+                .totalElements(listings.getTotalElements())
+                .totalPages(listings.getTotalPages())
+                .last(listings.isLast())
+                .facets(getListingFacets())
+                .build();
+    }
+
+    public ListingFacetsDTO getListingFacets() {
+        return listingFacetCounter.snapshot(referenceDataRegistry.categories());
+    }
+
+    public void rebuildFacetCounts() {
+        listingFacetCounter.replaceAll(listingRepository.findAllPriceSummaries());
+    }
+
+    private void recordFacets(Listing listing) {
+        BigDecimal minPrice = listing.getItems() == null ? null : listing.getItems().stream()
+                .map(Item::getPrice)
+                .filter(Objects::nonNull)
+                .min(BigDecimal::compareTo)
+                .orElse(null);
+        Long categoryId = listing.getCategory() != null ? listing.getCategory().getId() : null;
+        listingFacetCounter.record(listing.getId(), categoryId, minPrice);
+    }
+
+    /**
+     * Page of flat listing cards (newest first) with item count, min price, thumbnail,
+     * category name and status name, loaded by one projection query plus the count query.
+     */
+    public Page<ListingCardDTO> getPublicListingCards(int page, int size) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id").descending());
+
+        return listingRepository.findListingCards(pageable);
+    }
+
+    /**
+     * Keyset-paginated feed (newest first). Seeks on {@code id < cursor} using the primary key
+     * and fetches one extra row to know whether another slice exists, so no count query is needed.
+     *
+     * @param after The opaque cursor from the previous slice, or blank for the first slice.
+     * @param size  The number of listings per slice.
+     */
+    public ListingCursorPageDTO<Listing> getPublicListingsAfter(String after, int size) {
+        Long lastSeenId = ListingCursor.decode(after);
+        Limit limit = Limit.of(size + 1);
+
+        List<Listing> rows = lastSeenId == null
+                ? listingRepository.findByOrderByIdDesc(limit)
+                : listingRepository.findByIdLessThanOrderByIdDesc(lastSeenId, limit);
+
+        boolean hasMore = rows.size() > size;
+        List<Listing> content = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = hasMore ? ListingCursor.encode(content.get(content.size() - 1).getId()) : null;
+
+        return new ListingCursorPageDTO<>(content, content.size(), nextCursor, !hasMore);
+    }
+
     public Optional<Listing> getPublicListingById(Integer id) {
         return listingRepository.findById(id.longValue());
     }
 
-    public List<Listing> getAllListings() {
-        return listingRepository.findAll();
+    /**
+     * Returns the serialized JSON of a listing detail, served from the in-process cache when possible.
+     * A hit needs no transaction (and no pooled connection). On a miss the listing is loaded and
+     * serialized once in a read-only transaction, and the bytes are cached under the version read
+     * before loading, so a concurrent write can never leave stale JSON behind the new ETag.
+     */
+    public Optional<byte[]> getPublicListingDetailJson(Long id) {
+        long version = listingVersionRegistry.listingVersion(id);
+        byte[] cached = listingDetailCache.get(id, version);
+        if (cached == null) {
+            cached = readOnlyTransactionTemplate.execute(tx -> loadListingDetailJson(id));
+            if (cached == null) {
+                return Optional.empty();
+            }
+            listingDetailCache.put(id, version, cached);
+        }
+        listingSearchService.recordView(id);
+        return Optional.of(cached);
+    }
+
+    private byte[] loadListingDetailJson(Long id) {
+        Optional<Listing> listing = listingRepository.findById(id);
+        if (listing.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsBytes(listing.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize listing " + id, e);
+        }
     }
+
     public List<Listing> getListingsBySeller(Long sellerId) {
         return listingRepository.findBySellerId(sellerId);
     }
 
-    public List<Listing> getListingsByName(String name) {
+    /**
+     * One page of the seller's listings as compact summaries.
+     *
+     * @param sort One of id, title, status or newest (the default).
+     */
+    public Page<SellerListingSummaryDTO> getSellerListingSummaries(Long sellerId, int page, int size, String sort) {
+        Pageable pageable = PageRequest.of(page, size, sellerListingSort(sort));
+        return listingRepository.findSellerListingSummaries(sellerId, pageable);
+    }
+
+    private static Sort sellerListingSort(String sort) {
+        // The id tie-breaker keeps pages stable when titles or statuses repeat
+        return switch (sort == null ? "newest" : sort.toLowerCase()) {
+            case "newest" -> Sort.by("id").descending();
+            case "id" -> Sort.by("id").ascending();
+            case "title" -> Sort.by("title").ascending().and(Sort.by("id").descending());
+            case "status" -> JpaSort.unsafe("s.name").ascending().and(Sort.by("id").descending());
+            default -> throw new IllegalArgumentException("Unknown sort '" + sort + "'. Use id, title, status or newest.");
+        };
+    }
+
+    /**
+     * Listings matching the name, answered from the search index (best match first).
+     * A blank name matches nothing instead of returning the whole table.
+     */
+    public List<Listing> getListingsByName(String name, int page, int size) {
         if (name == null || name.trim().isEmpty()) {
-            return listingRepository.findAll();
+            return List.of();
         }
-        return listingRepository.findByTitleContainingIgnoreCase(name);
+        ListingSearchIndex.SearchHits hits = listingSearchService.searchIds(name, page, size);
+        Map<Long, Listing> byId = listingRepository.findAllById(hits.ids()).stream()
+                .collect(Collectors.toMap(Listing::getId, Function.identity()));
+        return hits.ids().stream()
+                .map(byId::get)
+                .filter(listing -> listing != null)
+                .toList();
+    }
+
+    /**
+     * Relevance-ranked, paginated search over listing titles, tags and item names.
+     */
+    public ListingSearchResultDTO searchListings(String query, int page, int size) {
+        return listingSearchService.search(query, page, size);
+    }
+
+    /**
+     * Reloads categories and statuses after they changed. Cached listing JSON embeds their names,
+     * so the detail cache and all ETags are dropped as well.
+     */
+    public void refreshReferenceData() {
+        referenceDataRegistry.refresh();
+        listingDetailCache.invalidateAll();
+        listingVersionRegistry.invalidateAll();
+    }
+
+    /**
+     * Rebuilds the search index from the database and forgets every cached view and ETag,
+     * since the rows may have been changed behind the application's back.
+     */
+    public SearchIndexStatsDTO rebuildSearchIndex() {
+        SearchIndexStatsDTO stats = listingSearchService.rebuild();
+        listingDetailCache.invalidateAll();
+        listingVersionRegistry.invalidateAll();
+        return stats;
     }
 }
@@ -0,0 +1,84 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory version stamps used to build ETags for the public listing endpoints without touching the database.
+ *
+ * Every write path that changes a listing calls {@link #touch(Long)}, which gives that listing a new version
+ * and also moves the catalog version used by list, filter and search responses. Stamps include the boot time,
+ * so ETags handed out by a previous run never match after a restart.
+ */
+@Component
+public class ListingVersionRegistry {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<Long, Stamp> listings = new ConcurrentHashMap<>();
+
+    // Version of every listing not in the map (moved by invalidateAll)
+    private final AtomicReference<Stamp> floor = new AtomicReference<>(new Stamp(0, System.currentTimeMillis()));
+    private final AtomicReference<Stamp> catalog = new AtomicReference<>(floor.get());
+
+    // Concurrent writers may finish in any order; a stamp only ever moves forward
+    private static final BinaryOperator<Stamp> NEWER = (a, b) -> a.version() >= b.version() ? a : b;
+
+    public record Stamp(long version, long lastModified) {
+    }
+
+    public void touch(Long listingId) {
+        Stamp stamp = next();
+        listings.merge(listingId, stamp, NEWER);
+        catalog.accumulateAndGet(stamp, NEWER);
+    }
+
+    /**
+     * Forgets every per-listing stamp, e.g. after the listings were changed outside the application.
+     */
+    public void invalidateAll() {
+        Stamp stamp = next();
+        floor.accumulateAndGet(stamp, NEWER);
+        listings.clear();
+        catalog.accumulateAndGet(stamp, NEWER);
+    }
+
+    /**
+     * The listing's current version; it changes whenever {@link #listingETag(Long)} does.
+     */
+    public long listingVersion(Long listingId) {
+        return listingStamp(listingId).version();
+    }
+
+    public String listingETag(Long listingId) {
+        return "l" + listingId + "-" + epoch + "-" + listingStamp(listingId).version();
+    }
+
+    public long listingLastModified(Long listingId) {
+        return listingStamp(listingId).lastModified();
+    }
+
+    public String catalogETag() {
+        return "c-" + epoch + "-" + catalog.get().version();
+    }
+
+    public long catalogLastModified() {
+        return catalog.get().lastModified();
+    }
+
+    private Stamp listingStamp(Long listingId) {
+        // A touch racing with invalidateAll may leave a stamp older than the floor in the map
+        Stamp stamp = listings.get(listingId);
+        Stamp base = floor.get();
+        return stamp == null ? base : NEWER.apply(stamp, base);
+    }
+
+    private Stamp next() {
+        return new Stamp(clock.incrementAndGet(), System.currentTimeMillis());
+    }
+}
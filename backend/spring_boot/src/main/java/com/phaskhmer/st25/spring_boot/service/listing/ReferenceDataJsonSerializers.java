@@ -0,0 +1,73 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.io.IOException;
+
+import org.hibernate.proxy.HibernateProxy;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.phaskhmer.st25.spring_boot.model.Category;
+import com.phaskhmer.st25.spring_boot.model.listing.ListingStatus;
+
+/**
+ * Serializers for the lazy category and status references on a listing.
+ *
+ * They read the id straight from the Hibernate proxy and write the registry's copy, so serializing a
+ * listing never initializes the proxy (no extra select). The JSON shape is the same as the entity's.
+ * Instantiated by Spring's handler instantiator, which injects the registry.
+ */
+public final class ReferenceDataJsonSerializers {
+
+    private ReferenceDataJsonSerializers() {
+    }
+
+    private static Long idOf(Object value) {
+        if (value instanceof HibernateProxy proxy) {
+            return (Long) proxy.getHibernateLazyInitializer().getIdentifier();
+        }
+        if (value instanceof Category category) {
+            return category.getId();
+        }
+        return ((ListingStatus) value).getId();
+    }
+
+    public static class CategorySerializer extends JsonSerializer<Category> {
+
+        private final ReferenceDataRegistry registry;
+
+        public CategorySerializer(ReferenceDataRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void serialize(Category value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            Category cached = registry.category(idOf(value));
+            Category category = cached != null ? cached : value;
+            gen.writeStartObject();
+            gen.writeObjectField("id", category.getId());
+            gen.writeStringField("name", category.getName());
+            gen.writeEndObject();
+        }
+    }
+
+    public static class StatusSerializer extends JsonSerializer<ListingStatus> {
+
+        private final ReferenceDataRegistry registry;
+
+        public StatusSerializer(ReferenceDataRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public void serialize(ListingStatus value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            ListingStatus cached = registry.status(idOf(value));
+            ListingStatus status = cached != null ? cached : value;
+            gen.writeStartObject();
+            gen.writeObjectField("id", status.getId());
+            gen.writeStringField("name", status.getName());
+            gen.writeStringField("description", status.getDescription());
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.phaskhmer.st25.spring_boot.service.listing;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.model.Category;
+import com.phaskhmer.st25.spring_boot.model.listing.ListingStatus;
+import com.phaskhmer.st25.spring_boot.repository.CategoryRepository;
+import com.phaskhmer.st25.spring_boot.repository.ListingStatusRepository;
+
+/**
+ * In-memory copy of the near-static reference tables (categories and listing statuses).
+ *
+ * Each refresh builds a new immutable snapshot and swaps it in, so readers never lock and never see a
+ * half-loaded table. The objects handed out are detached copies and must not be modified. Call
+ * {@link #refresh()} after changing either table.
+ */
+@Component
+public class ReferenceDataRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataRegistry.class);
+
+    private final CategoryRepository categoryRepository;
+    private final ListingStatusRepository listingStatusRepository;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile Snapshot snapshot;
+
+    private record Snapshot(Map<Long, Category> categories, List<Category> categoriesByName,
+                            Map<Long, ListingStatus> statuses, long version) {
+    }
+
+    public ReferenceDataRegistry(CategoryRepository categoryRepository, ListingStatusRepository listingStatusRepository) {
+        this.categoryRepository = categoryRepository;
+        this.listingStatusRepository = listingStatusRepository;
+    }
+
+    public synchronized void refresh() {
+        List<Category> categories = categoryRepository.findAll().stream()
+                .map(category -> new Category(category.getId(), category.getName()))
+                .sorted(Comparator.comparing(Category::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)))
+                .toList();
+        Map<Long, ListingStatus> statuses = listingStatusRepository.findAll().stream()
+                .map(status -> new ListingStatus(status.getId(), status.getName(), status.getDescription()))
+                .collect(Collectors.toUnmodifiableMap(ListingStatus::getId, Function.identity()));
+
+        long version = snapshot == null ? 1 : snapshot.version() + 1;
+        snapshot = new Snapshot(
+                categories.stream().collect(Collectors.toUnmodifiableMap(Category::getId, Function.identity())),
+                categories, statuses, version);
+        logger.info("Reference data loaded: {} categories, {} listing statuses", categories.size(), statuses.size());
+    }
+
+    public Category category(Long id) {
+        return id == null ? null : current().categories().get(id);
+    }
+
+    public ListingStatus status(Long id) {
+        return id == null ? null : current().statuses().get(id);
+    }
+
+    /**
+     * All categories, ordered by name.
+     */
+    public List<Category> categories() {
+        return current().categoriesByName();
+    }
+
+    public boolean hasCategory(Long id) {
+        return current().categories().containsKey(id);
+    }
+
+    public boolean hasStatus(Long id) {
+        return current().statuses().containsKey(id);
+    }
+
+    /**
+     * Changes on every refresh; used as the ETag of the category list.
+     */
+    public String version() {
+        return "r-" + epoch + "-" + current().version();
+    }
+
+    private Snapshot current() {
+        Snapshot loaded = snapshot;
+        if (loaded == null) {
+            // First use before the startup refresh ran
+            refresh();
+            loaded = snapshot;
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,209 @@
+package com.phaskhmer.st25.spring_boot.service.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index over listings: term -> (listing id -> field weight).
+ * Queries are conjunctive (every term must match) and ranked by the sum of weight * idf,
+ * newest listing first on ties.
+ */
+@Component
+public class ListingSearchIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Segment current = new Segment();
+    // Ids indexed or removed live while a rebuild reads the table; null when no rebuild is running
+    private Set<Long> touchedDuringRebuild;
+
+    public record SearchHits(long total, List<Long> ids) {
+    }
+
+    public record Stats(int documents, int terms, long postings) {
+    }
+
+    /**
+     * The postings plus the reverse map needed to remove or re-index a listing.
+     */
+    public static class Segment {
+        private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+        private final Map<Long, Map<String, Float>> documents = new HashMap<>();
+
+        public void add(Long listingId, Map<String, Float> termWeights) {
+            remove(listingId);
+            if (termWeights.isEmpty()) {
+                return;
+            }
+            documents.put(listingId, termWeights);
+            termWeights.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(listingId, weight));
+        }
+
+        public void remove(Long listingId) {
+            Map<String, Float> previous = documents.remove(listingId);
+            if (previous == null) {
+                return;
+            }
+            for (String term : previous.keySet()) {
+                Map<Long, Float> posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(listingId);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+    }
+
+    public void index(Long listingId, Map<String, Float> termWeights) {
+        lock.writeLock().lock();
+        try {
+            current.add(listingId, termWeights);
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.add(listingId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long listingId) {
+        lock.writeLock().lock();
+        try {
+            current.remove(listingId);
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.add(listingId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts recording the listings changed live, so {@link #swap(Segment)} can replay them onto the
+     * replacement. Call before the rebuild reads the first row.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the live segment with a freshly built one.
+     * Listings indexed or removed live since {@link #beginRebuild()} may have been read by the rebuild
+     * before they changed, so their live state wins over the replacement's copy.
+     */
+    public void swap(Segment replacement) {
+        lock.writeLock().lock();
+        try {
+            if (touchedDuringRebuild != null) {
+                for (Long id : touchedDuringRebuild) {
+                    Map<String, Float> terms = current.documents.get(id);
+                    if (terms != null) {
+                        replacement.add(id, terms);
+                    } else {
+                        replacement.remove(id);
+                    }
+                }
+                touchedDuringRebuild = null;
+            }
+            current = replacement;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public SearchHits search(List<String> terms, int offset, int limit) {
+        if (terms.isEmpty() || limit <= 0) {
+            return new SearchHits(0, Collections.emptyList());
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Map<Long, Float>> lists = new ArrayList<>();
+            List<Double> idfs = new ArrayList<>();
+            int documentCount = current.documents.size();
+            for (String term : terms.stream().distinct().toList()) {
+                Map<Long, Float> posting = current.postings.get(term);
+                if (posting == null) {
+                    return new SearchHits(0, Collections.emptyList());
+                }
+                lists.add(posting);
+                idfs.add(Math.log(1.0 + (double) documentCount / posting.size()));
+            }
+
+            // Drive the intersection from the rarest term
+            int driver = 0;
+            for (int i = 1; i < lists.size(); i++) {
+                if (lists.get(i).size() < lists.get(driver).size()) {
+                    driver = i;
+                }
+            }
+
+            Comparator<ScoredId> worstFirst = Comparator.comparingDouble(ScoredId::score)
+                    .thenComparingLong(ScoredId::id);
+            PriorityQueue<ScoredId> top = new PriorityQueue<>(worstFirst);
+            int keep = offset + limit;
+            long total = 0;
+
+            for (Long id : lists.get(driver).keySet()) {
+                double score = 0;
+                boolean matchesAll = true;
+                for (int i = 0; i < lists.size(); i++) {
+                    Float weight = lists.get(i).get(id);
+                    if (weight == null) {
+                        matchesAll = false;
+                        break;
+                    }
+                    score += weight * idfs.get(i);
+                }
+                if (!matchesAll) {
+                    continue;
+                }
+                total++;
+                top.offer(new ScoredId(id, score));
+                if (top.size() > keep) {
+                    top.poll();
+                }
+            }
+
+            List<ScoredId> ranked = new ArrayList<>(top);
+            ranked.sort(worstFirst.reversed());
+            List<Long> ids = ranked.stream()
+                    .skip(offset)
+                    .map(ScoredId::id)
+                    .toList();
+            return new SearchHits(total, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            long postingCount = current.postings.values().stream().mapToLong(Map::size).sum();
+            return new Stats(current.documents.size(), current.postings.size(), postingCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private record ScoredId(long id, double score) {
+    }
+}
@@ -0,0 +1,207 @@
+package com.phaskhmer.st25.spring_boot.service.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingCardDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSearchResultDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSuggestionDTO;
+import com.phaskhmer.st25.spring_boot.dto.listing.SearchIndexStatsDTO;
+import com.phaskhmer.st25.spring_boot.model.listing.Item;
+import com.phaskhmer.st25.spring_boot.model.listing.Listing;
+import com.phaskhmer.st25.spring_boot.repository.ListingRepository;
+
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Keeps {@link ListingSearchIndex} in sync with the listings table and answers search queries from it.
+ */
+@Service
+@RequiredArgsConstructor
+public class ListingSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListingSearchService.class);
+
+    // A match in the title counts more than a tag, and a tag more than an item name
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float TAG_WEIGHT = 2.0f;
+    private static final float ITEM_NAME_WEIGHT = 1.0f;
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    // Ring buffer of the most recent index lookup times, for the latency percentiles in stats()
+    private static final int LATENCY_WINDOW = 2048;
+    private final long[] recentLatencyNanos = new long[LATENCY_WINDOW];
+    private long queryCount;
+
+    private final Object rebuildLock = new Object();
+
+    private final ListingSearchIndex searchIndex;
+    private final ListingSuggester suggester;
+    private final ListingTokenizer tokenizer;
+    private final ListingRepository listingRepository;
+    private final EntityManager entityManager;
+
+    public void indexListing(Listing listing) {
+        searchIndex.index(listing.getId(), termWeights(listing));
+        suggester.add(listing.getId(), listing.getTitle());
+    }
+
+    public void removeListing(Long listingId) {
+        searchIndex.remove(listingId);
+        suggester.remove(listingId);
+    }
+
+    /**
+     * Title suggestions for a typed prefix, most viewed first.
+     */
+    public List<ListingSuggestionDTO> suggest(String prefix, int limit) {
+        return suggester.suggest(prefix, limit);
+    }
+
+    public void recordView(Long listingId) {
+        suggester.recordView(listingId);
+    }
+
+    /**
+     * Relevance-ranked ids of the listings matching every term of the query.
+     */
+    public ListingSearchIndex.SearchHits searchIds(String query, int page, int size) {
+        long started = System.nanoTime();
+        List<String> terms = tokenizer.tokenizeQuery(query);
+        // Callers cap the page; multiplyExact keeps an uncapped one from wrapping into a negative offset
+        ListingSearchIndex.SearchHits hits = searchIndex.search(terms, Math.multiplyExact(page, size), size);
+        recordLatency(System.nanoTime() - started);
+        return hits;
+    }
+
+    /**
+     * Relevance-ranked page of listing cards for the query. A blank query matches nothing.
+     */
+    @Transactional(readOnly = true)
+    public ListingSearchResultDTO search(String query, int page, int size) {
+        ListingSearchIndex.SearchHits hits = searchIds(query, page, size);
+
+        List<ListingCardDTO> results = Collections.emptyList();
+        if (!hits.ids().isEmpty()) {
+            Map<Long, ListingCardDTO> cardsById = listingRepository.findListingCardsByIdIn(hits.ids()).stream()
+                    .collect(Collectors.toMap(ListingCardDTO::getId, Function.identity()));
+            // Keep the index ranking; skip ids deleted since they were indexed
+            results = hits.ids().stream()
+                    .map(cardsById::get)
+                    .filter(card -> card != null)
+                    .toList();
+        }
+
+        return ListingSearchResultDTO.builder()
+                .query(query)
+                .page(page)
+                .size(size)
+                .totalHits(hits.total())
+                .results(results)
+                .build();
+    }
+
+    /**
+     * Rebuilds the whole index from the database, newest listings first, in batches.
+     * The live index keeps serving queries until the new one is swapped in. One rebuild runs at a time.
+     */
+    @Transactional(readOnly = true)
+    public SearchIndexStatsDTO rebuild() {
+        synchronized (rebuildLock) {
+            long started = System.currentTimeMillis();
+            ListingSearchIndex.Segment segment = new ListingSearchIndex.Segment();
+            Map<Long, String> titles = new HashMap<>();
+            searchIndex.beginRebuild();
+            suggester.beginRebuild();
+
+            List<Listing> batch = listingRepository.findByOrderByIdDesc(Limit.of(REBUILD_BATCH_SIZE));
+            while (!batch.isEmpty()) {
+                for (Listing listing : batch) {
+                    segment.add(listing.getId(), termWeights(listing));
+                    titles.put(listing.getId(), listing.getTitle());
+                }
+                Long lastId = batch.get(batch.size() - 1).getId();
+                // Keep the persistence context small while walking the table
+                entityManager.clear();
+                batch = listingRepository.findByIdLessThanOrderByIdDesc(lastId, Limit.of(REBUILD_BATCH_SIZE));
+            }
+
+            searchIndex.swap(segment);
+            suggester.replaceAll(titles);
+            SearchIndexStatsDTO stats = stats();
+            logger.info("Listing search index rebuilt in {} ms: {} listings, {} terms, {} postings",
+                    System.currentTimeMillis() - started, stats.getDocuments(), stats.getTerms(), stats.getPostings());
+            return stats;
+        }
+    }
+
+    public SearchIndexStatsDTO stats() {
+        ListingSearchIndex.Stats indexStats = searchIndex.stats();
+        long[] window;
+        long queries;
+        synchronized (recentLatencyNanos) {
+            queries = queryCount;
+            window = Arrays.copyOf(recentLatencyNanos, (int) Math.min(queryCount, LATENCY_WINDOW));
+        }
+        Arrays.sort(window);
+
+        return SearchIndexStatsDTO.builder()
+                .documents(indexStats.documents())
+                .terms(indexStats.terms())
+                .postings(indexStats.postings())
+                .queries(queries)
+                .p50Micros(percentile(window, 0.50) / 1000)
+                .p99Micros(percentile(window, 0.99) / 1000)
+                .build();
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (recentLatencyNanos) {
+            recentLatencyNanos[(int) (queryCount % LATENCY_WINDOW)] = nanos;
+            queryCount++;
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private Map<String, Float> termWeights(Listing listing) {
+        Map<String, Float> weights = new HashMap<>();
+        addTerms(weights, listing.getTitle(), TITLE_WEIGHT);
+        if (listing.getTags() != null) {
+            for (String tag : listing.getTags()) {
+                addTerms(weights, tag, TAG_WEIGHT);
+            }
+        }
+        if (listing.getItems() != null) {
+            for (Item item : listing.getItems()) {
+                addTerms(weights, item.getName(), ITEM_NAME_WEIGHT);
+            }
+        }
+        return weights;
+    }
+
+    private void addTerms(Map<String, Float> weights, String text, float weight) {
+        for (String term : tokenizer.tokenize(text)) {
+            weights.merge(term, weight, Float::sum);
+        }
+    }
+}
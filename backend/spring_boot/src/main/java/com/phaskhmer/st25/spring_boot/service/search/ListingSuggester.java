@@ -0,0 +1,328 @@
+package com.phaskhmer.st25.spring_boot.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.dto.listing.ListingSuggestionDTO;
+
+/**
+ * Prefix autocomplete over listing titles.
+ *
+ * Titles are inserted into a character trie from the start of the title and from the start of
+ * each following word. Every node keeps its own top suggestions ordered by popularity (detail
+ * views), so a lookup is one walk down the prefix and never scans the subtree.
+ *
+ * Views are counted in per-listing {@link LongAdder}s without taking the trie lock, and folded into
+ * the top lists every few seconds by {@link #foldViews()}.
+ */
+@Component
+public class ListingSuggester {
+
+    private static final int TOP_PER_NODE = 10;
+    // Nobody types more than this before picking a suggestion; keeps paths and updates short
+    private static final int MAX_PREFIX_LENGTH = 24;
+    private static final int MAX_WORD_STARTS = 8;
+
+    private static final Comparator<Entry> BEST_FIRST = Comparator.comparingLong((Entry e) -> e.weight)
+            .reversed()
+            .thenComparing(Comparator.comparingLong((Entry e) -> e.id).reversed());
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+    private Map<Long, Entry> entries = new HashMap<>();
+    // Listings added or removed while a rebuild reads the table; null when no rebuild is running
+    private Set<Long> touchedDuringRebuild;
+
+    private volatile Map<Long, LongAdder> pendingViews = new ConcurrentHashMap<>();
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Entry> top = new ArrayList<>(2);
+        // Entries with a key ending exactly here; needed to refill the top list after a removal
+        private List<Entry> ends;
+    }
+
+    private static final class Entry {
+        private final long id;
+        private final String title;
+        private final Set<String> keys;
+        private long weight;
+
+        private Entry(long id, String title, Set<String> keys, long weight) {
+            this.id = id;
+            this.title = title;
+            this.keys = keys;
+            this.weight = weight;
+        }
+    }
+
+    public void add(Long listingId, String title) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.get(listingId);
+            long weight = previous != null ? previous.weight : 0;
+            removeLocked(listingId);
+            insertLocked(new Entry(listingId, title, keysOf(title), weight));
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.add(listingId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long listingId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(listingId);
+            if (touchedDuringRebuild != null) {
+                touchedDuringRebuild.add(listingId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts a detail view towards the listing's popularity. Cheap enough for every request: the count
+     * reaches the suggestions on the next {@link #foldViews()}.
+     */
+    public void recordView(Long listingId) {
+        Map<Long, LongAdder> views = pendingViews;
+        LongAdder counter = views.get(listingId);
+        if (counter == null) {
+            counter = views.computeIfAbsent(listingId, id -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Adds the views counted since the last run to the listings' weights and moves them up the top lists.
+     */
+    @Scheduled(fixedDelayString = "${listing.suggest.view-fold-interval-ms:5000}")
+    public void foldViews() {
+        Map<Long, LongAdder> views = pendingViews;
+        if (views.isEmpty()) {
+            return;
+        }
+        pendingViews = new ConcurrentHashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            views.forEach((listingId, counter) -> {
+                Entry entry = entries.get(listingId);
+                if (entry == null) {
+                    return;
+                }
+                entry.weight += counter.sum();
+                for (String key : entry.keys) {
+                    Node node = root;
+                    for (int i = 0; i < key.length() && node != null; i++) {
+                        node = node.children.get(key.charAt(i));
+                        if (node != null) {
+                            offer(node, entry);
+                        }
+                    }
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ListingSuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (key.length() > MAX_PREFIX_LENGTH) {
+            key = key.substring(0, MAX_PREFIX_LENGTH);
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return List.of();
+            }
+            return node.top.stream()
+                    .limit(limit)
+                    .map(entry -> new ListingSuggestionDTO(entry.id, entry.title))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Starts recording the listings added or removed live, so {@link #replaceAll(Map)} can keep their
+     * live state. Call before the rebuild reads the first row.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            touchedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole trie, keeping the popularity already collected for listings that still exist.
+     * Listings added or removed live since {@link #beginRebuild()} keep their live state instead of the
+     * rebuild's copy.
+     */
+    public void replaceAll(Map<Long, String> titles) {
+        lock.writeLock().lock();
+        try {
+            Map<Long, Entry> previous = entries;
+            Set<Long> touched = touchedDuringRebuild != null ? touchedDuringRebuild : Set.of();
+            touchedDuringRebuild = null;
+            root = new Node();
+            entries = new HashMap<>();
+            titles.forEach((id, title) -> {
+                if (touched.contains(id)) {
+                    return;
+                }
+                Entry old = previous.get(id);
+                insertLocked(new Entry(id, title, keysOf(title), old != null ? old.weight : 0));
+            });
+            for (Long id : touched) {
+                Entry live = previous.get(id);
+                if (live != null) {
+                    insertLocked(new Entry(id, live.title, live.keys, live.weight));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insertLocked(Entry entry) {
+        if (entry.keys.isEmpty()) {
+            return;
+        }
+        entries.put(entry.id, entry);
+        for (String key : entry.keys) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+                offer(node, entry);
+            }
+            if (node.ends == null) {
+                node.ends = new ArrayList<>(1);
+            }
+            node.ends.add(entry);
+        }
+    }
+
+    private void removeLocked(Long listingId) {
+        Entry entry = entries.remove(listingId);
+        if (entry == null) {
+            return;
+        }
+        for (String key : entry.keys) {
+            List<Node> path = new ArrayList<>(key.length());
+            Node node = root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+                if (node != null) {
+                    path.add(node);
+                }
+            }
+            if (node != null && node.ends != null) {
+                node.ends.remove(entry);
+            }
+            // Deepest first, so each node refills from children that are already complete
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node step = path.get(i);
+                boolean wasFull = step.top.size() >= TOP_PER_NODE;
+                if (step.top.remove(entry) && wasFull) {
+                    refill(step);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes a node's top list after an entry left it. Every entry below the node that belongs in
+     * its top list is either in a child's top list or ends at the node.
+     */
+    private static void refill(Node node) {
+        node.top.clear();
+        if (node.ends != null) {
+            for (Entry entry : node.ends) {
+                offer(node, entry);
+            }
+        }
+        for (Node child : node.children.values()) {
+            for (Entry entry : child.top) {
+                offer(node, entry);
+            }
+        }
+    }
+
+    /**
+     * Places the entry in the node's top list if it belongs there, keeping the list sorted and bounded.
+     */
+    private static void offer(Node node, Entry entry) {
+        List<Entry> top = node.top;
+        top.remove(entry);
+        if (top.size() >= TOP_PER_NODE && BEST_FIRST.compare(entry, top.get(top.size() - 1)) >= 0) {
+            return;
+        }
+        int position = 0;
+        while (position < top.size() && BEST_FIRST.compare(top.get(position), entry) < 0) {
+            position++;
+        }
+        top.add(position, entry);
+        if (top.size() > TOP_PER_NODE) {
+            top.remove(top.size() - 1);
+        }
+    }
+
+    /**
+     * The normalized title from its start and from the start of each following word.
+     */
+    private static Set<String> keysOf(String title) {
+        Set<String> keys = new LinkedHashSet<>();
+        String normalized = normalize(title);
+        int wordStarts = 0;
+        for (int i = 0; i < normalized.length() && wordStarts < MAX_WORD_STARTS; i++) {
+            boolean wordStart = i == 0 || normalized.charAt(i - 1) == ' ';
+            if (wordStart && normalized.charAt(i) != ' ') {
+                String key = normalized.substring(i);
+                keys.add(key.length() > MAX_PREFIX_LENGTH ? key.substring(0, MAX_PREFIX_LENGTH) : key);
+                wordStarts++;
+            }
+        }
+        return keys;
+    }
+
+    private static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .strip();
+    }
+}
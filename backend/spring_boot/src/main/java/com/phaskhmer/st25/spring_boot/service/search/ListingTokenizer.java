@@ -0,0 +1,240 @@
+package com.phaskhmer.st25.spring_boot.service.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Splits listing text into lower-cased search terms.
+ *
+ * Latin (and other spaced) text is split into words. Khmer is written without spaces, so a Khmer
+ * run is first cut into orthographic clusters (a base character plus its subscripts and vowel signs)
+ * and then indexed three ways: every dictionary word found in it, every cluster, and every pair of
+ * adjacent clusters. The cluster n-grams make any substring of a title findable even when the
+ * dictionary does not know the word.
+ */
+@Component
+public class ListingTokenizer {
+
+    private static final String DICTIONARY = "search/khmer-dictionary.txt";
+
+    private static final int COENG = 0x17D2;
+
+    private final Set<String> khmerWords;
+    private final int maxWordClusters;
+
+    public ListingTokenizer() {
+        this(loadDictionary());
+    }
+
+    ListingTokenizer(Set<String> khmerWords) {
+        this.khmerWords = khmerWords;
+        this.maxWordClusters = khmerWords.stream()
+                .mapToInt(word -> clusters(word).size())
+                .max()
+                .orElse(1);
+    }
+
+    /**
+     * Terms to index for a piece of listing text.
+     */
+    public List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String run : runs(text)) {
+            if (!isKhmer(run.codePointAt(0))) {
+                terms.add(run);
+                continue;
+            }
+            List<String> clusters = clusters(run);
+            Set<String> runTerms = new LinkedHashSet<>();
+            for (int start = 0; start < clusters.size(); start++) {
+                // Every dictionary word starting here, not just the longest, so a query word
+                // is found even when it sits inside a longer compound
+                int longest = Math.min(maxWordClusters, clusters.size() - start);
+                for (int length = longest; length >= 2; length--) {
+                    String candidate = join(clusters, start, length);
+                    if (khmerWords.contains(candidate)) {
+                        runTerms.add(candidate);
+                    }
+                }
+                runTerms.add(clusters.get(start));
+                if (start + 1 < clusters.size()) {
+                    runTerms.add(join(clusters, start, 2));
+                }
+            }
+            terms.addAll(runTerms);
+        }
+        return terms;
+    }
+
+    /**
+     * Terms a listing must contain to match the query.
+     * A Khmer run is segmented into dictionary words by longest match; if the dictionary
+     * cannot cover the whole run, its cluster bigrams are used instead (substring semantics).
+     */
+    public List<String> tokenizeQuery(String text) {
+        List<String> terms = new ArrayList<>();
+        for (String run : runs(text)) {
+            if (!isKhmer(run.codePointAt(0))) {
+                terms.add(run);
+                continue;
+            }
+            List<String> clusters = clusters(run);
+            if (clusters.size() == 1) {
+                terms.add(clusters.get(0));
+                continue;
+            }
+            List<String> words = segment(clusters);
+            if (words != null) {
+                terms.addAll(words);
+            } else {
+                for (int start = 0; start + 1 < clusters.size(); start++) {
+                    terms.add(join(clusters, start, 2));
+                }
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Longest-match segmentation, or null when some part of the run is not a dictionary word.
+     */
+    private List<String> segment(List<String> clusters) {
+        List<String> words = new ArrayList<>();
+        int start = 0;
+        while (start < clusters.size()) {
+            int longest = Math.min(maxWordClusters, clusters.size() - start);
+            String match = null;
+            int matchLength = 0;
+            for (int length = longest; length >= 1; length--) {
+                String candidate = join(clusters, start, length);
+                if (khmerWords.contains(candidate)) {
+                    match = candidate;
+                    matchLength = length;
+                    break;
+                }
+            }
+            if (match == null) {
+                return null;
+            }
+            words.add(match);
+            start += matchLength;
+        }
+        return words;
+    }
+
+    /**
+     * Maximal runs of letters, digits and combining marks, split where the script changes
+     * between Khmer and everything else.
+     */
+    private List<String> runs(String text) {
+        List<String> runs = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return runs;
+        }
+
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+        int start = -1;
+        boolean startKhmer = false;
+        int i = 0;
+        while (i < normalized.length()) {
+            int cp = normalized.codePointAt(i);
+            boolean termChar = isTermChar(cp);
+            if (start >= 0 && (!termChar || isKhmer(cp) != startKhmer)) {
+                runs.add(normalized.substring(start, i));
+                start = -1;
+            }
+            if (termChar && start < 0) {
+                start = i;
+                startKhmer = isKhmer(cp);
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0) {
+            runs.add(normalized.substring(start));
+        }
+        return runs;
+    }
+
+    /**
+     * Cuts a Khmer run into clusters: a base character followed by any COENG + consonant
+     * subscripts and dependent vowels or signs.
+     */
+    static List<String> clusters(String run) {
+        List<String> clusters = new ArrayList<>();
+        int i = 0;
+        while (i < run.length()) {
+            int start = i;
+            i++;
+            while (i < run.length()) {
+                char c = run.charAt(i);
+                if (c == COENG && i + 1 < run.length() && isKhmerConsonant(run.charAt(i + 1))) {
+                    i += 2;
+                } else if (isKhmerDependent(c)) {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            clusters.add(run.substring(start, i));
+        }
+        return clusters;
+    }
+
+    private static String join(List<String> clusters, int start, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < start + length; i++) {
+            sb.append(clusters.get(i));
+        }
+        return sb.toString();
+    }
+
+    static boolean isTermChar(int cp) {
+        if (Character.isLetterOrDigit(cp)) {
+            return true;
+        }
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    static boolean isKhmer(int cp) {
+        return (cp >= 0x1780 && cp <= 0x17FF) || (cp >= 0x19E0 && cp <= 0x19FF);
+    }
+
+    private static boolean isKhmerConsonant(char c) {
+        return c >= 0x1780 && c <= 0x17A2;
+    }
+
+    private static boolean isKhmerDependent(char c) {
+        return (c >= 0x17B4 && c <= 0x17D3) || c == 0x17DD;
+    }
+
+    private static Set<String> loadDictionary() {
+        Set<String> words = new HashSet<>();
+        ClassPathResource resource = new ClassPathResource(DICTIONARY);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String word = line.strip();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(Normalizer.normalize(word, Normalizer.Form.NFC));
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not load Khmer dictionary " + DICTIONARY, e);
+        }
+        return words;
+    }
+}
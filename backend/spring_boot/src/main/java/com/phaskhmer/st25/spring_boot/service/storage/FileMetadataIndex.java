@@ -0,0 +1,116 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Content type, size and ETag of every stored file (originals and variants), keyed by absolute path.
+ *
+ * Entries are recorded when a file is written and looked up on every download, so serving a file never
+ * probes its content type or stats it again. Stored files are never modified in place, only created and
+ * deleted, so an entry stays valid until {@link #forget(Path)}.
+ *
+ * Stored names are never reused for other bytes, so the ETag is the name plus the variant key alone: it
+ * survives restarts, shard moves and {@link FileStorageService#retain(String)} touching the mtime. The mtime
+ * is not an identity of the bytes, so no Last-Modified is derived from it.
+ */
+@Component
+public class FileMetadataIndex {
+
+    private static final String VARIANTS_DIR = "variants";
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    private Path uploadRoot;
+    private final Map<Path, FileMetadata> entries = new ConcurrentHashMap<>();
+
+    private final HotFileCache hotFileCache;
+
+    public FileMetadataIndex(HotFileCache hotFileCache) {
+        this.hotFileCache = hotFileCache;
+    }
+
+    public record FileMetadata(String contentType, long size, String etag) {
+    }
+
+    @PostConstruct
+    public void init() {
+        this.uploadRoot = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Records a file that was just written.
+     */
+    public FileMetadata record(Path file) throws IOException {
+        FileMetadata metadata = read(file);
+        entries.put(file, metadata);
+        return metadata;
+    }
+
+    /**
+     * @return The file's metadata, read once from disk if it was not recorded yet, or null if there is no such file.
+     */
+    public FileMetadata lookup(Path file) {
+        FileMetadata metadata = entries.get(file);
+        if (metadata != null) {
+            return metadata;
+        }
+        try {
+            return record(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops a deleted or moved file, along with its cached bytes.
+     */
+    public void forget(Path file) {
+        entries.remove(file);
+        hotFileCache.invalidate(file);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private FileMetadata read(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(file.toString());
+        }
+        String contentType = MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+        return new FileMetadata(contentType, attributes.size(), etagOf(file));
+    }
+
+    /**
+     * The file name, prefixed with the variant key for files under {@code <upload-dir>/variants/<variant>/}.
+     */
+    private String etagOf(Path file) {
+        String name = file.getFileName().toString();
+        Path relative = file.toAbsolutePath().normalize();
+        if (relative.startsWith(uploadRoot)) {
+            relative = uploadRoot.relativize(relative);
+            if (relative.getNameCount() >= 3 && relative.getName(0).toString().equals(VARIANTS_DIR)) {
+                return relative.getName(1) + "-" + name;
+            }
+        }
+        return name;
+    }
+}
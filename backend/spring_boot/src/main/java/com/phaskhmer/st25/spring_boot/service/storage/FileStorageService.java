@@ -1,25 +1,79 @@
 package com.phaskhmer.st25.spring_boot.service.storage;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class FileStorageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    // Disk writes allowed in flight at once across all requests
+    private static final int MAX_PARALLEL_WRITES = 16;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
+    @Value("${file.storage.dedupe:true}")
+    private boolean dedupe;
+
+    private final AtomicLong dedupeHits = new AtomicLong();
+
+    // Serializes handing out an existing blob (mtime refresh) with the collector deleting it, per file name
+    private static final int NAME_LOCK_STRIPES = 64;
+    private final Object[] nameLocks = new Object[NAME_LOCK_STRIPES];
+
     private Path fileStorageLocation;
 
+    // One virtual thread per file; the semaphore keeps the disk from being flooded
+    private final ExecutorService storageExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore writePermits = new Semaphore(MAX_PARALLEL_WRITES);
+
+    private final ImageVariantService imageVariantService;
+    private final StoredFileIndex storedFileIndex;
+    private final FileMetadataIndex fileMetadataIndex;
+
+    public FileStorageService(ImageVariantService imageVariantService, StoredFileIndex storedFileIndex,
+                              FileMetadataIndex fileMetadataIndex) {
+        this.imageVariantService = imageVariantService;
+        this.storedFileIndex = storedFileIndex;
+        this.fileMetadataIndex = fileMetadataIndex;
+        for (int i = 0; i < NAME_LOCK_STRIPES; i++) {
+            nameLocks[i] = new Object();
+        }
+    }
+
     @PostConstruct
     public void init() {
         this.fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
@@ -39,22 +93,270 @@ public class FileStorageService {
      * @return The saved filename (e.g., a UUID).
      */
     public String storeFile(MultipartFile file) {
-        // Normalize file name and create a unique name to prevent collisions
-        String originalFilename = file.getOriginalFilename();
+        try {
+            return storeFile(file.getInputStream(), file.getOriginalFilename());
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + file.getOriginalFilename() + ". Please try again!", ex);
+        }
+    }
+
+    /**
+     * Stores the content of a stream (e.g. an entry of an uploaded archive).
+     *
+     * With file.storage.dedupe on, the file is named after the SHA-256 of its content, computed while it is
+     * written, and identical content is kept only once. Otherwise it gets a new random name.
+     * @param content The bytes to store; not closed by this method.
+     * @param originalFilename Used only for its extension.
+     * @return The saved filename (e.g., a digest or UUID plus the extension).
+     */
+    public String storeFile(InputStream content, String originalFilename) {
+        String fileExtension = extensionOf(originalFilename);
+
+        try {
+            if (dedupe) {
+                return storeContentAddressed(content, fileExtension);
+            }
+
+            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+            // Copy file to its shard directory
+            Path targetLocation = storedFileIndex.shardPath(uniqueFileName);
+            Files.createDirectories(targetLocation.getParent());
+            Files.copy(content, targetLocation);
+            storedFileIndex.record(uniqueFileName, targetLocation, true);
+            fileMetadataIndex.record(targetLocation);
+
+            // Resized copies are made in the background; the upload does not wait for them
+            imageVariantService.pregenerate(uniqueFileName);
+            return uniqueFileName;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + originalFilename + ". Please try again!", ex);
+        }
+    }
+
+    /**
+     * Moves a fully received file (e.g. a finished resumable upload) into the store without copying it.
+     * The file must be on the same filesystem as the upload directory; it is gone after this call.
+     * @param completed The received file.
+     * @param originalFilename Used only for its extension.
+     * @return The saved filename.
+     */
+    public String storeCompletedFile(Path completed, String originalFilename) {
+        String fileExtension = extensionOf(originalFilename);
+        try {
+            if (dedupe) {
+                MessageDigest digest = newSha256();
+                try (DigestInputStream hashing = new DigestInputStream(Files.newInputStream(completed), digest)) {
+                    hashing.transferTo(OutputStream.nullOutputStream());
+                }
+                return placeContentAddressed(completed, digest, fileExtension);
+            }
+
+            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+            Path targetLocation = storedFileIndex.shardPath(uniqueFileName);
+            Files.createDirectories(targetLocation.getParent());
+            Files.move(completed, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+            storedFileIndex.record(uniqueFileName, targetLocation, true);
+            fileMetadataIndex.record(targetLocation);
+            imageVariantService.pregenerate(uniqueFileName);
+            return uniqueFileName;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not store file " + originalFilename + ". Please try again!", ex);
+        }
+    }
+
+    // Normalize the extension; the rest of the original name is never used
+    private static String extensionOf(String originalFilename) {
         String fileExtension = originalFilename != null && originalFilename.contains(".")
                 ? originalFilename.substring(originalFilename.lastIndexOf("."))
                 : ".jpg"; // Default to jpg if no extension found
+        return fileExtension.matches("\\.[A-Za-z0-9]{1,10}") ? fileExtension : ".jpg";
+    }
 
-        String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
-        
+    private String storeContentAddressed(InputStream content, String fileExtension) throws IOException {
+        MessageDigest digest = newSha256();
+        // Dot-prefixed so the garbage collector never treats a write in progress as a blob
+        Path temp = Files.createTempFile(this.fileStorageLocation, ".upload-", ".tmp");
         try {
-            // Copy file to the target location (replacing existing file with the same name)
-            Path targetLocation = this.fileStorageLocation.resolve(uniqueFileName);
-            Files.copy(file.getInputStream(), targetLocation);
-            
-            return uniqueFileName;
+            try (DigestInputStream hashing = new DigestInputStream(content, digest)) {
+                Files.copy(hashing, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return placeContentAddressed(temp, digest, fileExtension);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a hashed file to its digest name, or drops it if that content is already stored.
+     */
+    private String placeContentAddressed(Path temp, MessageDigest digest, String fileExtension) throws IOException {
+        try {
+            String fileName = HexFormat.of().formatHex(digest.digest()) + fileExtension.toLowerCase(Locale.ROOT);
+            synchronized (lockFor(fileName)) {
+                if (retain(fileName)) {
+                    dedupeHits.incrementAndGet();
+                    return fileName;
+                }
+                Path target = storedFileIndex.shardPath(fileName);
+                Files.createDirectories(target.getParent());
+                // Same content racing in from two requests ends up as the same bytes either way
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                storedFileIndex.record(fileName, target, true);
+                fileMetadataIndex.record(target);
+            }
+            imageVariantService.pregenerate(fileName);
+            return fileName;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Keeps a stored file out of the collector's reach for another grace period, e.g. before a listing
+     * that is about to be saved is pointed at it.
+     * @return false if the file is no longer stored.
+     */
+    public boolean retain(String fileName) {
+        synchronized (lockFor(fileName)) {
+            Path existing = storedFileIndex.locate(fileName);
+            if (existing == null) {
+                return false;
+            }
+            try {
+                Files.setLastModifiedTime(existing, FileTime.fromMillis(System.currentTimeMillis()));
+                return true;
+            } catch (NoSuchFileException e) {
+                // Deleted behind the index's back
+                storedFileIndex.remove(fileName);
+                return false;
+            } catch (IOException e) {
+                throw new RuntimeException("Could not refresh stored file " + fileName, e);
+            }
+        }
+    }
+
+    /**
+     * The lock {@link StorageGarbageCollector} holds while it re-checks and deletes a file, so a file handed
+     * out by {@link #retain(String)} is never deleted in between.
+     */
+    Object lockFor(String fileName) {
+        return nameLocks[Math.floorMod(fileName.hashCode(), NAME_LOCK_STRIPES)];
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Stores several uploaded files in parallel and returns their saved names in the same order.
+     * Either every file is stored or none is: if one write fails, the files already written are deleted.
+     * @param files The files received from the UI.
+     * @return The saved filenames, index for index.
+     */
+    public List<String> storeAll(List<MultipartFile> files) {
+        long started = System.nanoTime();
+        List<Future<String>> writes = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            writes.add(storageExecutor.submit(() -> storeTimed(file)));
+        }
+
+        List<String> stored = new ArrayList<>(files.size());
+        RuntimeException failure = null;
+        for (Future<String> write : writes) {
+            try {
+                stored.add(write.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException re ? re : new RuntimeException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new RuntimeException("Interrupted while storing files", e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            deleteFiles(stored);
+            throw failure;
+        }
+        logger.info("Stored {} files in {} ms", files.size(), (System.nanoTime() - started) / 1_000_000);
+        return stored;
+    }
+
+    private String storeTimed(MultipartFile file) throws InterruptedException {
+        writePermits.acquire();
+        try {
+            long started = System.nanoTime();
+            String fileName = storeFile(file);
+            logger.debug("Stored {} ({} bytes) as {} in {} ms", file.getOriginalFilename(), file.getSize(), fileName,
+                    (System.nanoTime() - started) / 1_000_000);
+            return fileName;
+        } finally {
+            writePermits.release();
+        }
+    }
+
+    /**
+     * Deletes files written for a request that failed afterwards.
+     * With dedupe on, a blob may already be shared with other listings, so nothing is deleted here and
+     * unreferenced blobs are left to {@link StorageGarbageCollector}.
+     */
+    public void deleteFiles(List<String> fileNames) {
+        if (dedupe) {
+            return;
+        }
+        for (String fileName : fileNames) {
+            if (fileName != null && !deleteFile(fileName)) {
+                logger.warn("Could not delete orphaned upload {}", fileName);
+            }
+        }
+    }
+
+    public Path getStorageLocation() {
+        return fileStorageLocation;
+    }
+
+    /**
+     * The path of a stored file, looked up in the {@link StoredFileIndex}, or null if there is no such file.
+     */
+    public Path resolve(String fileName) {
+        return storedFileIndex.locate(fileName);
+    }
+
+    /**
+     * Uploads that matched an already stored blob since startup.
+     */
+    public long getDedupeHits() {
+        return dedupeHits.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        storageExecutor.shutdown();
+    }
+
+    /**
+     * Removes a stored file, e.g. when the listing that referenced it could not be saved.
+     * @return true if the file existed and was deleted.
+     */
+    public boolean deleteFile(String fileName) {
+        try {
+            Path target = storedFileIndex.locate(fileName);
+            if (target == null) {
+                return false;
+            }
+            imageVariantService.deleteVariants(fileName);
+            storedFileIndex.remove(fileName);
+            fileMetadataIndex.forget(target);
+            return Files.deleteIfExists(target);
         } catch (IOException ex) {
-            throw new RuntimeException("Could not store file " + originalFilename + ". Please try again!", ex);
+            return false;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.phaskhmer.st25.spring_boot.dto.CacheStatsDTO;
+
+/**
+ * Bytes of the most requested small files (mostly thumbnails), kept in direct buffers outside the Java heap
+ * and bounded by a byte budget.
+ *
+ * Eviction follows W-TinyLFU: new files enter a small LRU window (1% of the budget); files pushed out of the
+ * window only replace the least recently used file of the main region if a count-min sketch says they are
+ * requested more often. A one-off burst of cold files therefore cannot flush the popular ones. A file is
+ * loaded only once it has been requested at least twice, so one-hit wonders never cost a read.
+ *
+ * Files are immutable (see {@link StaticFileServer}); {@link #invalidate(Path)} is called when one is deleted.
+ * Evicted buffers are released by the garbage collector, so -XX:MaxDirectMemorySize should leave headroom
+ * above the budget.
+ */
+@Component
+public class HotFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotFileCache.class);
+
+    private static final int MIN_FREQUENCY_TO_LOAD = 2;
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final long windowMaxBytes;
+
+    // accessOrder = true turns the maps into LRU lists
+    private final LinkedHashMap<Path, ByteBuffer> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Path, ByteBuffer> main = new LinkedHashMap<>(16, 0.75f, true);
+    private long windowBytes;
+    private long mainBytes;
+
+    private final FrequencySketch sketch;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+
+    public HotFileCache(
+            @Value("${file.hot-cache.enabled:true}") boolean enabled,
+            @Value("${file.hot-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${file.hot-cache.max-file-bytes:1048576}") long maxFileBytes
+    ) {
+        this.enabled = enabled && maxBytes > 0;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxFileBytes = Math.min(maxFileBytes, this.maxBytes);
+        this.windowMaxBytes = Math.min(this.maxBytes, Math.max(this.maxBytes / 100, this.maxFileBytes));
+        // Thumbnails are a few KB; size the sketch for that many distinct files
+        this.sketch = new FrequencySketch((int) Math.min(1 << 22, Math.max(1024, this.maxBytes / 8192)));
+    }
+
+    /**
+     * Whether a file of this size can be cached at all; larger files are not looked up.
+     */
+    public boolean isCacheable(long size) {
+        return enabled && size > 0 && size <= maxFileBytes;
+    }
+
+    /**
+     * The cached bytes of a file (a read-only view of its own, positioned at 0), or null on a miss.
+     * Counts towards the file's popularity either way. Only call for {@link #isCacheable(long)} sizes.
+     */
+    public synchronized ByteBuffer get(Path file) {
+        sketch.increment(file.hashCode());
+        ByteBuffer data = window.get(file);
+        if (data == null) {
+            data = main.get(file);
+        }
+        if (data == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Offers a file that was just served from disk. It is loaded only if small enough and requested before.
+     */
+    public void offer(Path file, long size) {
+        if (!isCacheable(size)) {
+            return;
+        }
+        synchronized (this) {
+            if (window.containsKey(file) || main.containsKey(file)
+                    || sketch.frequency(file.hashCode()) < MIN_FREQUENCY_TO_LOAD) {
+                return;
+            }
+        }
+
+        ByteBuffer data;
+        try {
+            data = load(file, size);
+        } catch (IOException e) {
+            logger.debug("Could not cache {}: {}", file, e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            if (window.containsKey(file) || main.containsKey(file)) {
+                return;
+            }
+            window.put(file, data);
+            windowBytes += size;
+            while (windowBytes > windowMaxBytes) {
+                Map.Entry<Path, ByteBuffer> candidate = window.pollFirstEntry();
+                windowBytes -= candidate.getValue().capacity();
+                admitToMain(candidate.getKey(), candidate.getValue());
+            }
+        }
+    }
+
+    public synchronized void invalidate(Path file) {
+        ByteBuffer data = window.remove(file);
+        if (data != null) {
+            windowBytes -= data.capacity();
+        }
+        data = main.remove(file);
+        if (data != null) {
+            mainBytes -= data.capacity();
+        }
+    }
+
+    public synchronized CacheStatsDTO stats() {
+        return CacheStatsDTO.builder()
+                .name("hotFiles")
+                .size(windowBytes + mainBytes)
+                .capacity(maxBytes)
+                .entries((long) (window.size() + main.size()))
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .rejections(rejections)
+                .build();
+    }
+
+    /**
+     * Moves a file leaving the window into the main region if it is more popular than what it would evict.
+     */
+    private void admitToMain(Path file, ByteBuffer data) {
+        long mainMaxBytes = maxBytes - windowMaxBytes;
+        long size = data.capacity();
+        if (size > mainMaxBytes) {
+            rejections++;
+            return;
+        }
+        int candidateFrequency = sketch.frequency(file.hashCode());
+        while (mainBytes + size > mainMaxBytes) {
+            Map.Entry<Path, ByteBuffer> victim = main.firstEntry();
+            if (candidateFrequency <= sketch.frequency(victim.getKey().hashCode())) {
+                rejections++;
+                return;
+            }
+            main.remove(victim.getKey());
+            mainBytes -= victim.getValue().capacity();
+            evictions++;
+        }
+        main.put(file, data);
+        mainBytes += size;
+    }
+
+    private static ByteBuffer load(Path file, long size) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("File shrank while caching");
+                }
+            }
+        }
+        return data.flip();
+    }
+
+    /**
+     * Count-min sketch of request counts: four rows of 4-bit-style counters (capped at 15), halved every
+     * 10 x width increments so popularity fades over time.
+     */
+    private static final class FrequencySketch {
+
+        private static final int ROWS = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = { 0x97cb3127, 0xbd3b2bad, 0x8e4f1a2d, 0xc2b2ae35 };
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+            this.counters = new byte[width * ROWS];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(int hash) {
+            int width = mask + 1;
+            for (int row = 0; row < ROWS; row++) {
+                int index = row * width + indexOf(hash, row);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] = (byte) (counters[i] >>> 1);
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int width = mask + 1;
+            int min = MAX_COUNT;
+            for (int row = 0; row < ROWS; row++) {
+                min = Math.min(min, counters[row * width + indexOf(hash, row)]);
+            }
+            return min;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            return h & mask;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.util.Locale;
+
+/**
+ * Resized, recompressed renditions of an uploaded image, requested with ?variant= on the file endpoint.
+ */
+public enum ImageVariant {
+    THUMB(160, 0.70f),
+    CARD(480, 0.80f),
+    FULL(1280, 0.85f);
+
+    private final int maxEdge;
+    private final float jpegQuality;
+
+    ImageVariant(int maxEdge, float jpegQuality) {
+        this.maxEdge = maxEdge;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    public float getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The variant named by the request parameter, or null when none was asked for.
+     * @throws IllegalArgumentException if the name is not a known variant.
+     */
+    public static ImageVariant fromParam(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        for (ImageVariant variant : values()) {
+            if (variant.key().equalsIgnoreCase(value.trim())) {
+                return variant;
+            }
+        }
+        throw new IllegalArgumentException("Unknown image variant '" + value + "'. Use thumb, card or full.");
+    }
+}
@@ -0,0 +1,446 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.NodeList;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Produces the thumb / card / full JPEG renditions of uploaded images and keeps them on disk under
+ * {@code <upload-dir>/variants/<variant>/ab/cd/}, sharded like the originals (see {@link StoredFileIndex}).
+ *
+ * All three variants of a file are generated from a single decode, on a small bounded pool: right after
+ * upload, or on the first request for a variant that is not there yet. The pool bounds both CPU and the
+ * memory taken by decoded phone photos; when it is saturated, callers fall back to the original file.
+ *
+ * The header is read first: images over file.images.max-pixels are never decoded, and the rest are decoded
+ * with subsampling to about the largest edge needed, so a huge declared size cannot exhaust the heap.
+ * ImageIO ignores the EXIF Orientation tag, so the decoded image is rotated or flipped as the tag says
+ * before it is resized; otherwise portrait phone photos would come out sideways.
+ */
+@Service
+public class ImageVariantService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    private static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int QUEUE_CAPACITY = 500;
+    private static final long LAZY_WAIT_SECONDS = 10;
+    private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+    private static final int APP1 = 0xE1;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${file.images.max-pixels:100000000}")
+    private long maxPixels;
+
+    private Path variantsLocation;
+
+    private final StoredFileIndex storedFileIndex;
+    private final FileMetadataIndex fileMetadataIndex;
+    private final ThreadPoolExecutor workers;
+    // File name -> running generation, so a burst of requests for a new image decodes it once
+    private final Map<String, Future<?>> inflight = new ConcurrentHashMap<>();
+
+    public ImageVariantService(StoredFileIndex storedFileIndex, FileMetadataIndex fileMetadataIndex) {
+        this.storedFileIndex = storedFileIndex;
+        this.fileMetadataIndex = fileMetadataIndex;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variants-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PostConstruct
+    public void init() {
+        this.variantsLocation = Paths.get(uploadDir).toAbsolutePath().normalize().resolve("variants");
+        // Decoding through ImageIO's disk cache only adds temp-file I/O
+        ImageIO.setUseCache(false);
+        try {
+            for (ImageVariant variant : ImageVariant.values()) {
+                Files.createDirectories(variantsLocation.resolve(variant.key()));
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create the image variant directories.", ex);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Queues generation of every variant of a freshly stored file. Never blocks the caller.
+     */
+    public void pregenerate(String fileName) {
+        try {
+            schedule(fileName);
+        } catch (RejectedExecutionException e) {
+            // Generated lazily on first request instead
+            logger.debug("Variant queue full, {} will be generated on demand", fileName);
+        }
+    }
+
+    /**
+     * The path of the requested variant, generating it if needed.
+     *
+     * @return The variant file, or null when the original is missing, is not a decodable image,
+     *         or the pool is too busy (the caller should then serve the original).
+     */
+    public Path resolve(String fileName, ImageVariant variant) {
+        Path target = variantPath(fileName, variant);
+        if (target == null) {
+            return null;
+        }
+        if (Files.exists(target)) {
+            return target;
+        }
+        Path legacy = legacyVariantPath(fileName, variant);
+        if (Files.exists(legacy)) {
+            // Made before variants were sharded; the shard migration moves it
+            return legacy;
+        }
+        if (storedFileIndex.locate(fileName) == null) {
+            return null;
+        }
+        try {
+            schedule(fileName).get(LAZY_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException | TimeoutException | ExecutionException e) {
+            logger.debug("No {} variant for {}: {}", variant.key(), fileName, e.toString());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return Files.exists(target) ? target : null;
+    }
+
+    public void deleteVariants(String fileName) {
+        for (ImageVariant variant : ImageVariant.values()) {
+            for (Path target : new Path[] { variantPath(fileName, variant), legacyVariantPath(fileName, variant) }) {
+                if (target != null) {
+                    try {
+                        fileMetadataIndex.forget(target);
+                        Files.deleteIfExists(target);
+                    } catch (IOException e) {
+                        logger.warn("Could not delete {} variant of {}", variant.key(), fileName);
+                    }
+                }
+            }
+        }
+    }
+
+    private Future<?> schedule(String fileName) {
+        return inflight.computeIfAbsent(fileName, name -> workers.submit(() -> {
+            try {
+                generateAll(name);
+            } finally {
+                inflight.remove(name);
+            }
+        }));
+    }
+
+    private void generateAll(String fileName) {
+        long started = System.nanoTime();
+        Path source = storedFileIndex.locate(fileName);
+        if (source == null) {
+            return;
+        }
+        List<ImageVariant> missing = new ArrayList<>();
+        int largestEdge = 0;
+        for (ImageVariant variant : ImageVariant.values()) {
+            Path target = variantPath(fileName, variant);
+            if (target != null && !Files.exists(target)) {
+                missing.add(variant);
+                largestEdge = Math.max(largestEdge, variant.getMaxEdge());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        BufferedImage original;
+        try {
+            original = readScaled(source, fileName, largestEdge);
+        } catch (IOException | RuntimeException e) {
+            // Decoders throw unchecked exceptions on some malformed files
+            logger.warn("Could not decode {}: {}", fileName, e.getMessage());
+            return;
+        }
+        if (original == null) {
+            // Not an image format ImageIO understands, or too large to decode
+            return;
+        }
+
+        for (ImageVariant variant : missing) {
+            Path target = variantPath(fileName, variant);
+            try {
+                writeJpeg(resize(original, variant.getMaxEdge()), variant.getJpegQuality(), target);
+                fileMetadataIndex.record(target);
+            } catch (IOException e) {
+                logger.warn("Could not write {} variant of {}: {}", variant.key(), fileName, e.getMessage());
+            }
+        }
+        logger.debug("Generated variants of {} ({}x{} decoded) in {} ms", fileName, original.getWidth(), original.getHeight(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Decodes the image with its longer edge reduced to no less than targetEdge by subsampling, so the
+     * full-size raster is never held in memory, and turns it upright as its EXIF orientation says.
+     *
+     * @return The image, or null when the format is unknown or the declared size is over the pixel cap.
+     */
+    private BufferedImage readScaled(Path source, String fileName, int targetEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                // Metadata is kept: the EXIF orientation is in it
+                reader.setInput(in, true, false);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || (long) width * height > maxPixels) {
+                    logger.warn("Not decoding {}: {}x{} is over the {} pixel limit", fileName, width, height, maxPixels);
+                    return null;
+                }
+                ImageReadParam params = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / targetEdge);
+                if (step > 1) {
+                    params.setSourceSubsampling(step, step, 0, 0);
+                }
+                return orient(reader.read(0, params), exifOrientation(reader, fileName));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The EXIF Orientation (1 to 8) of a JPEG, or 1 (upright) when there is none or it cannot be read.
+     */
+    private static int exifOrientation(ImageReader reader, String fileName) {
+        try {
+            IIOMetadata metadata = reader.getImageMetadata(0);
+            if (metadata == null || !Arrays.asList(metadata.getMetadataFormatNames()).contains(JPEG_METADATA)) {
+                return 1;
+            }
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA);
+            NodeList markers = root.getElementsByTagName("unknown");
+            for (int i = 0; i < markers.getLength(); i++) {
+                IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+                if (String.valueOf(APP1).equals(marker.getAttribute("MarkerTag"))
+                        && marker.getUserObject() instanceof byte[] data) {
+                    int orientation = orientationOf(data);
+                    if (orientation > 0) {
+                        return orientation;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read the EXIF orientation of {}: {}", fileName, e.getMessage());
+        }
+        return 1;
+    }
+
+    /**
+     * Finds the Orientation tag in IFD0 of an APP1 "Exif" segment; 0 when it is not there.
+     */
+    private static int orientationOf(byte[] app1) {
+        int tiff = 6;
+        if (app1.length < tiff + 8 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') {
+            return 0;
+        }
+        ByteBuffer data = ByteBuffer.wrap(app1);
+        if (app1[tiff] == 'I' && app1[tiff + 1] == 'I') {
+            data.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (app1[tiff] != 'M' || app1[tiff + 1] != 'M') {
+            return 0;
+        }
+        long ifd = tiff + (data.getInt(tiff + 4) & 0xFFFFFFFFL);
+        if (ifd + 2 > app1.length) {
+            return 0;
+        }
+        int entries = data.getShort((int) ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            long entry = ifd + 2 + 12L * i;
+            if (entry + 12 > app1.length) {
+                return 0;
+            }
+            if ((data.getShort((int) entry) & 0xFFFF) == ORIENTATION_TAG) {
+                int orientation = data.getShort((int) entry + 8) & 0xFFFF;
+                return orientation >= 1 && orientation <= 8 ? orientation : 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Applies the rotation or mirroring an EXIF orientation calls for; orientations 5 to 8 swap the edges.
+     */
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (image == null || orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // upside down
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // mirrored upside down
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // turned 90 degrees clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transversed
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // turned 90 degrees counter-clockwise
+        };
+        boolean swap = orientation >= 5;
+        BufferedImage upright = new BufferedImage(swap ? h : w, swap ? w : h,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = upright.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return upright;
+    }
+
+    /**
+     * {@code <upload-dir>/variants/<variant>/ab/cd/<base>.jpg}, or null for a name that is not a stored file name.
+     */
+    Path variantPath(String fileName, ImageVariant variant) {
+        if (!StoredFileIndex.isValidName(fileName)) {
+            return null;
+        }
+        return variantsLocation.resolve(variant.key()).resolve(StoredFileIndex.shardOf(fileName)).resolve(variantName(fileName));
+    }
+
+    /**
+     * Where the variant was kept before sharding: {@code <upload-dir>/variants/<variant>/<base>.jpg}.
+     */
+    Path legacyVariantPath(String fileName, ImageVariant variant) {
+        if (!StoredFileIndex.isValidName(fileName)) {
+            return null;
+        }
+        return variantsLocation.resolve(variant.key()).resolve(variantName(fileName));
+    }
+
+    private static String variantName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + ".jpg";
+    }
+
+    /**
+     * Scales the image down so its longer edge is at most maxEdge, halving step by step for large
+     * reductions (one bilinear pass from 4000px to 160px aliases badly). JPEG has no alpha, so the
+     * result is always opaque RGB on white.
+     */
+    private static BufferedImage resize(BufferedImage source, int maxEdge) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = source;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            if (current != source && width == current.getWidth() && height == current.getHeight()) {
+                break;
+            }
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, float quality, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam params = writer.getDefaultWriteParam();
+        params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        params.setCompressionQuality(quality);
+
+        // Write next to the target and move into place, so readers never see a partial file
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".variant-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp);
+                 ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+                writer.setOutput(imageOut);
+                writer.write(null, new IIOImage(image, null, null), params);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Writes stored files to the client with the headers of an immutable static asset.
+ *
+ * Headers come from {@link FileMetadataIndex}, so nothing is probed per request. The body is handed to
+ * Tomcat's sendfile when the connector supports it (the kernel copies straight from the page cache to the
+ * socket); otherwise it is pushed with {@link FileChannel#transferTo}. Small popular files are written
+ * straight from {@link HotFileCache} instead. Honors If-None-Match and a single
+ * byte range (If-Range aware); multi-range requests get the whole file.
+ */
+@Component
+public class StaticFileServer {
+
+    // Names are content digests or random UUIDs and are never reused for different bytes
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    // A stand-in (e.g. the original served for a variant not generated yet) must be revalidated every time
+    private static final String REVALIDATE = "no-cache";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final FileMetadataIndex fileMetadataIndex;
+    private final HotFileCache hotFileCache;
+
+    public StaticFileServer(FileMetadataIndex fileMetadataIndex, HotFileCache hotFileCache) {
+        this.fileMetadataIndex = fileMetadataIndex;
+        this.hotFileCache = hotFileCache;
+    }
+
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Serves the file, or 404 when it does not exist.
+     *
+     * @param immutable False when the file stands in for what the URL names, so it must not be cached as that.
+     */
+    public void serve(Path file, String downloadName, boolean immutable, HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        FileMetadataIndex.FileMetadata metadata = fileMetadataIndex.lookup(file);
+        if (metadata == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        String etag = "\"" + metadata.etag() + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        response.setContentType(metadata.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + downloadName + "\"");
+
+        long size = metadata.size();
+        ByteRange range = new ByteRange(0, size - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            ByteRange requested = parseRange(rangeHeader, size);
+            if (requested == null) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            if (requested.length() < size) {
+                range = requested;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+            }
+        }
+
+        response.setContentLengthLong(Math.max(0, range.length()));
+        if ("HEAD".equals(request.getMethod()) || size == 0) {
+            return;
+        }
+
+        boolean cacheable = hotFileCache.isCacheable(size);
+        ByteBuffer cached = cacheable ? hotFileCache.get(file) : null;
+        if (cached != null) {
+            cached.limit((int) range.end() + 1).position((int) range.start());
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            while (cached.hasRemaining()) {
+                target.write(cached);
+            }
+            out.flush();
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat streams the file itself once the servlet returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            if (cacheable) {
+                hotFileCache.offer(file, size);
+            }
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = range.start();
+            long remaining = range.length();
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            out.flush();
+            if (cacheable) {
+                hotFileCache.offer(file, size);
+            }
+        } catch (NoSuchFileException e) {
+            // Deleted after the index lookup
+            fileMetadataIndex.forget(file);
+            response.reset();
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses a single "bytes=" range. Returns the whole file for headers we do not handle (multiple ranges,
+     * other units, malformed), and null when the range lies entirely past the end of the file.
+     */
+    private static ByteRange parseRange(String header, long size) {
+        ByteRange whole = new ByteRange(0, size - 1);
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return whole;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return whole;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                return new ByteRange(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) {
+                return null;
+            }
+            return start <= end ? new ByteRange(start, end) : whole;
+        } catch (NumberFormatException e) {
+            return whole;
+        }
+    }
+}
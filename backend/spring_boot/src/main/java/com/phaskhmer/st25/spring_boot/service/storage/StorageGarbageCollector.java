@@ -0,0 +1,139 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Mark-and-sweep collector for stored uploads.
+ *
+ * Marks every file name referenced by listings.image, items.image_url or a finished resumable upload
+ * (upload_sessions.stored_file_name), then deletes the stored files (and their variants) that nothing
+ * references. Files younger than the grace period are kept, because an upload is written before the listing
+ * that references it is committed. The final check and the delete happen under the file's lock in
+ * {@link FileStorageService}, so a dedupe hit or {@link FileStorageService#retain(String)} either sees the
+ * file gone or keeps it alive.
+ */
+@Component
+public class StorageGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageGarbageCollector.class);
+
+    private final FileStorageService fileStorageService;
+    private final ImageVariantService imageVariantService;
+    private final JdbcTemplate jdbcTemplate;
+    private final StoredFileIndex storedFileIndex;
+    private final FileMetadataIndex fileMetadataIndex;
+
+    @Value("${file.storage.gc-grace-minutes:60}")
+    private long graceMinutes;
+
+    public record Report(long referenced, long scanned, long deleted, long bytesFreed) {
+    }
+
+    public StorageGarbageCollector(FileStorageService fileStorageService, ImageVariantService imageVariantService,
+                                   JdbcTemplate jdbcTemplate, StoredFileIndex storedFileIndex,
+                                   FileMetadataIndex fileMetadataIndex) {
+        this.fileStorageService = fileStorageService;
+        this.imageVariantService = imageVariantService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.storedFileIndex = storedFileIndex;
+        this.fileMetadataIndex = fileMetadataIndex;
+    }
+
+    @Scheduled(initialDelayString = "${file.storage.gc-initial-delay-ms:600000}",
+            fixedDelayString = "${file.storage.gc-interval-ms:3600000}")
+    public void scheduledCollect() {
+        try {
+            collect();
+        } catch (RuntimeException e) {
+            logger.warn("Storage garbage collection failed: {}", e.getMessage());
+        }
+    }
+
+    public synchronized Report collect() {
+        long started = System.currentTimeMillis();
+        long cutoff = started - graceMinutes * 60_000;
+
+        // Mark: read before the sweep, so anything referenced after this point is younger than the cutoff
+        Set<String> referenced = new HashSet<>();
+        jdbcTemplate.query(
+                "SELECT image FROM listings WHERE image IS NOT NULL UNION SELECT image_url FROM items WHERE image_url IS NOT NULL"
+                        + " UNION SELECT stored_file_name FROM upload_sessions WHERE stored_file_name IS NOT NULL",
+                row -> {
+                    referenced.add(row.getString(1));
+                });
+
+        // Sweep: the shard tree plus files still in the old flat layout; variants and dot entries (the index,
+        // in-progress temp files) are skipped
+        long[] counts = new long[3];
+        Path root = fileStorageService.getStorageLocation();
+        try {
+            Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), 3, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    String name = dir.getFileName().toString();
+                    boolean skip = !dir.equals(root) && (name.startsWith(".") || dir.getParent().equals(root) && name.equals("variants"));
+                    return skip ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    String name = file.getFileName().toString();
+                    if (!attributes.isRegularFile() || !StoredFileIndex.isValidName(name)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    counts[0]++;
+                    if (referenced.contains(name) || attributes.lastModifiedTime().toMillis() > cutoff) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    synchronized (fileStorageService.lockFor(name)) {
+                        // A dedupe hit or retain() refreshes the mtime; check again right before deleting
+                        if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        storedFileIndex.remove(name);
+                        fileMetadataIndex.forget(file);
+                        if (!Files.deleteIfExists(file)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    }
+                    imageVariantService.deleteVariants(name);
+                    counts[1]++;
+                    counts[2] += attributes.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    // Removed while walking
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not sweep the upload directory", e);
+        }
+        long scanned = counts[0];
+        long deleted = counts[1];
+        long bytesFreed = counts[2];
+
+        Report report = new Report(referenced.size(), scanned, deleted, bytesFreed);
+        logger.info("Storage GC in {} ms: {} referenced, {} files scanned, {} deleted ({} bytes freed)",
+                System.currentTimeMillis() - started, report.referenced(), scanned, deleted, bytesFreed);
+        return report;
+    }
+}
@@ -0,0 +1,159 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves uploads from the old flat {@code <upload-dir>} into the sharded tree while the app keeps serving.
+ *
+ * Files are handled in batches. Each file is first hard-linked into its shard and the index is pointed at
+ * the new path; the old name is unlinked only after a short linger, so a request that looked up the old
+ * path just before the switch can still open it. Variants move along with their original. Safe to stop
+ * and rerun at any point: a file already present in its shard is just unlinked from the old place.
+ */
+@Component
+public class StorageShardMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageShardMigrator.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StoredFileIndex storedFileIndex;
+    private final FileMetadataIndex fileMetadataIndex;
+    private final ImageVariantService imageVariantService;
+
+    @Value("${file.storage.shard-migration.linger-ms:2000}")
+    private long lingerMillis;
+
+    public record Report(long moved, long skipped, long millis) {
+    }
+
+    public StorageShardMigrator(StoredFileIndex storedFileIndex, FileMetadataIndex fileMetadataIndex,
+                                ImageVariantService imageVariantService) {
+        this.storedFileIndex = storedFileIndex;
+        this.fileMetadataIndex = fileMetadataIndex;
+        this.imageVariantService = imageVariantService;
+    }
+
+    public synchronized Report migrate() {
+        long started = System.currentTimeMillis();
+        long moved = 0;
+        long skipped = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        // Unlinking entries while the directory is being listed is fine; each name is seen at most once
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storedFileIndex.getStorageLocation())) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!StoredFileIndex.isValidName(name) || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                batch.add(name);
+                if (batch.size() == BATCH_SIZE) {
+                    long done = migrateBatch(batch);
+                    moved += done;
+                    skipped += batch.size() - done;
+                    batch.clear();
+                    logger.info("Shard migration: {} files moved so far", moved);
+                }
+            }
+            if (!batch.isEmpty()) {
+                long done = migrateBatch(batch);
+                moved += done;
+                skipped += batch.size() - done;
+            }
+            if (moved > 0) {
+                storedFileIndex.compact();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not migrate the upload directory", e);
+        }
+
+        Report report = new Report(moved, skipped, System.currentTimeMillis() - started);
+        if (moved > 0 || skipped > 0) {
+            logger.info("Shard migration finished in {} ms: {} files moved, {} skipped", report.millis(), moved, skipped);
+        }
+        return report;
+    }
+
+    private long migrateBatch(List<String> names) {
+        List<Path> oldPaths = new ArrayList<>(names.size() * 2);
+        long moved = 0;
+        for (String name : names) {
+            Path source = storedFileIndex.legacyPath(name);
+            Path target = storedFileIndex.shardPath(name);
+            try {
+                linkInto(source, target);
+                storedFileIndex.record(name, target, true);
+                oldPaths.add(source);
+                for (ImageVariant variant : ImageVariant.values()) {
+                    Path legacyVariant = imageVariantService.legacyVariantPath(name, variant);
+                    if (legacyVariant != null && Files.exists(legacyVariant)) {
+                        linkInto(legacyVariant, imageVariantService.variantPath(name, variant));
+                        oldPaths.add(legacyVariant);
+                    }
+                }
+                moved++;
+            } catch (NoSuchFileException e) {
+                // Deleted (e.g. by the garbage collector) since the directory was listed
+            } catch (IOException e) {
+                logger.warn("Could not move {} into its shard: {}", name, e.getMessage());
+            }
+        }
+
+        try {
+            // Requests that resolved an old path just before the switch get time to open it
+            Thread.sleep(lingerMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return moved;
+        }
+        for (Path oldPath : oldPaths) {
+            try {
+                fileMetadataIndex.forget(oldPath);
+                Files.deleteIfExists(oldPath);
+            } catch (IOException e) {
+                logger.warn("Could not remove {} after moving it: {}", oldPath, e.getMessage());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Hard-links source to target, copying instead when the filesystem has no hard links.
+     */
+    private static void linkInto(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.createLink(target, source);
+        } catch (FileAlreadyExistsException e) {
+            // Linked by a concurrent or earlier run
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            Path temp = Files.createTempFile(target.getParent(), ".migrate-", ".tmp");
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Where every stored upload lives, with its size, content type and creation time.
+ *
+ * Uploads are spread over a two-level directory tree, {@code <upload-dir>/ab/cd/<name>}, where "abcd" are
+ * the first two bytes of the SHA-256 of the name, so no directory grows past a few thousand entries.
+ * Files written before the tree existed sit flat in {@code <upload-dir>} until {@link StorageShardMigrator}
+ * moves them; the index knows which layout each file is in, so a lookup never probes the directories.
+ *
+ * The index is kept in memory and persisted as an append-only log under {@code <upload-dir>/.index},
+ * compacted on startup. It is a cache of the filesystem: a name it does not know is looked up on disk once
+ * and recorded, so a lost or truncated log only costs some extra lookups.
+ */
+@Component
+public class StoredFileIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StoredFileIndex.class);
+
+    private static final int LOG_MAGIC = 0x55504958; // "UPIX"
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    private Path storageLocation;
+    private Path logFile;
+
+    private final Map<String, StoredFile> entries = new ConcurrentHashMap<>();
+    private DataOutputStream log;
+    private long logRecords;
+
+    public record StoredFile(String name, long size, String contentType, long createdAt, boolean sharded) {
+    }
+
+    @PostConstruct
+    public void init() {
+        this.storageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        this.logFile = storageLocation.resolve(".index").resolve("uploads.idx");
+        try {
+            Files.createDirectories(logFile.getParent());
+            load();
+            if (logRecords > 2L * entries.size() + 1000) {
+                compact();
+            }
+            openLog();
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open the upload index " + logFile, ex);
+        }
+        logger.info("Upload index loaded: {} files", entries.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not close the upload index: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The path of a stored upload, or null if there is no such file. Names holding a path separator
+     * (or naming a hidden file) are rejected.
+     */
+    public Path locate(String name) {
+        StoredFile file = get(name);
+        return file == null ? null : pathOf(file);
+    }
+
+    /**
+     * The index entry of a stored upload, looked up on disk (and recorded) if the index does not know it.
+     */
+    public StoredFile get(String name) {
+        if (!isValidName(name)) {
+            return null;
+        }
+        StoredFile file = entries.get(name);
+        if (file != null) {
+            return file;
+        }
+        // Not indexed yet (written before the index existed, or the log lost its tail): find it once
+        try {
+            Path sharded = shardPath(name);
+            if (Files.isRegularFile(sharded)) {
+                return record(name, sharded, true);
+            }
+            Path flat = legacyPath(name);
+            if (Files.isRegularFile(flat)) {
+                return record(name, flat, false);
+            }
+        } catch (IOException e) {
+            logger.debug("Could not index {}: {}", name, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Records a file that was just written to (or moved into) the given location.
+     */
+    public StoredFile record(String name, Path file, boolean sharded) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        String contentType = MediaTypeFactory.getMediaType(name)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
+        StoredFile entry = new StoredFile(name, attributes.size(), contentType,
+                attributes.creationTime().toMillis(), sharded);
+        entries.put(name, entry);
+        append(entry);
+        return entry;
+    }
+
+    public void remove(String name) {
+        if (entries.remove(name) != null) {
+            appendRemove(name);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Path getStorageLocation() {
+        return storageLocation;
+    }
+
+    public Path pathOf(StoredFile file) {
+        return file.sharded() ? shardPath(file.name()) : legacyPath(file.name());
+    }
+
+    /**
+     * {@code <upload-dir>/ab/cd/<name>}.
+     */
+    public Path shardPath(String name) {
+        return storageLocation.resolve(shardOf(name)).resolve(name);
+    }
+
+    public Path legacyPath(String name) {
+        return storageLocation.resolve(name);
+    }
+
+    /**
+     * The two directory levels of a name, e.g. "3f/a2". Also used for variants, so they shard the same way.
+     */
+    public static String shardOf(String name) {
+        String hex = HexFormat.of().formatHex(sha256(name.getBytes(StandardCharsets.UTF_8)), 0, 2);
+        return hex.substring(0, 2) + "/" + hex.substring(2, 4);
+    }
+
+    public static boolean isValidName(String name) {
+        return name != null && !name.isEmpty() && !name.startsWith(".")
+                && name.indexOf('/') < 0 && name.indexOf('\\') < 0;
+    }
+
+    /**
+     * Rewrites the log with only the live entries.
+     */
+    public synchronized void compact() throws IOException {
+        Path temp = Files.createTempFile(logFile.getParent(), "uploads-", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(LOG_MAGIC);
+                for (StoredFile entry : entries.values()) {
+                    writeRecord(out, encodePut(entry));
+                }
+            }
+            boolean reopen = log != null;
+            if (reopen) {
+                log.close();
+            }
+            Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logRecords = entries.size();
+            if (reopen) {
+                openLog();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized void append(StoredFile entry) {
+        writeToLog(encodePut(entry));
+    }
+
+    private synchronized void appendRemove(String name) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(name);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        writeToLog(bytes.toByteArray());
+    }
+
+    private void writeToLog(byte[] record) {
+        if (log == null) {
+            return;
+        }
+        try {
+            writeRecord(log, record);
+            log.flush();
+            logRecords++;
+        } catch (IOException e) {
+            // The in-memory entry is still right; a restart just looks the file up on disk again
+            logger.warn("Could not append to the upload index: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] encodePut(StoredFile entry) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(OP_PUT);
+            out.writeUTF(entry.name());
+            out.writeLong(entry.size());
+            out.writeLong(entry.createdAt());
+            out.writeBoolean(entry.sharded());
+            out.writeUTF(entry.contentType());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeShort(record.length);
+        out.write(record);
+    }
+
+    private void openLog() throws IOException {
+        boolean fresh = !Files.exists(logFile) || Files.size(logFile) == 0;
+        OutputStream file = Files.newOutputStream(logFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.log = new DataOutputStream(new BufferedOutputStream(file));
+        if (fresh) {
+            log.writeInt(LOG_MAGIC);
+            log.flush();
+        }
+    }
+
+    /**
+     * Replays the log. A record cut short by a crash ends the replay and is truncated away.
+     */
+    private void load() throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            if (length < 4) {
+                channel.truncate(0);
+                return;
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+            if (in.readInt() != LOG_MAGIC) {
+                logger.warn("Upload index {} has an unknown format; starting empty", logFile);
+                channel.truncate(0);
+                return;
+            }
+            long valid = 4;
+            byte[] buffer = new byte[0xFFFF];
+            while (valid < length) {
+                try {
+                    int recordLength = in.readUnsignedShort();
+                    in.readFully(buffer, 0, recordLength);
+                    apply(buffer, recordLength);
+                    valid += 2 + recordLength;
+                    logRecords++;
+                } catch (EOFException e) {
+                    logger.warn("Upload index {} ends in a partial record; dropping the last {} bytes", logFile, length - valid);
+                    channel.truncate(valid);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void apply(byte[] record, int length) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 0, length));
+        byte op = in.readByte();
+        String name = in.readUTF();
+        if (op == OP_PUT) {
+            long size = in.readLong();
+            long createdAt = in.readLong();
+            boolean sharded = in.readBoolean();
+            String contentType = in.readUTF();
+            entries.put(name, new StoredFile(name, size, contentType, createdAt, sharded));
+        } else if (op == OP_REMOVE) {
+            entries.remove(name);
+        }
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.phaskhmer.st25.spring_boot.service.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.phaskhmer.st25.spring_boot.model.upload.UploadSession;
+import com.phaskhmer.st25.spring_boot.repository.UploadSessionRepository;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Resumable uploads: a client opens a session for one file, sends it in chunks at explicit offsets, and
+ * after a dropped connection asks for the offset and carries on from there.
+ *
+ * Chunks are written straight from the request stream into {@code <upload-dir>/.uploads/<id>.part}, on the
+ * same filesystem as the store, so finishing an upload is a rename rather than a copy. Whatever part of a
+ * chunk arrived before the connection dropped is kept. Sessions not used for a listing expire.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final FileStorageService fileStorageService;
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${file.uploads.expiry-hours:24}")
+    private long expiryHours;
+
+    private Path partsLocation;
+
+    // Sessions with a chunk being written right now; a second concurrent PATCH is refused
+    private final Set<String> writing = ConcurrentHashMap.newKeySet();
+
+    public UploadSessionService(UploadSessionRepository uploadSessionRepository, FileStorageService fileStorageService) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.fileStorageService = fileStorageService;
+    }
+
+    @PostConstruct
+    public void init() {
+        this.partsLocation = fileStorageService.getStorageLocation().resolve(".uploads");
+        try {
+            Files.createDirectories(partsLocation);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create the directory for uploads in progress.", ex);
+        }
+    }
+
+    /**
+     * Opens a session for a file of the given size.
+     * @throws IllegalArgumentException when the size is out of range.
+     */
+    public UploadSession create(Long sellerId, String fileName, long totalSize) {
+        if (totalSize <= 0 || totalSize > maxFileSize.toBytes()) {
+            throw new IllegalArgumentException("Upload size must be between 1 and " + maxFileSize.toBytes() + " bytes.");
+        }
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setSellerId(sellerId);
+        session.setFileName(fileName == null || fileName.isBlank() ? "upload.jpg" : fileName);
+        session.setTotalSize(totalSize);
+        try {
+            Files.createFile(partPath(session.getId()));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not start the upload.", e);
+        }
+        return uploadSessionRepository.save(session);
+    }
+
+    public Optional<UploadSession> find(Long sellerId, String uploadId) {
+        return uploadSessionRepository.findByIdAndSellerId(uploadId, sellerId);
+    }
+
+    /**
+     * Bytes received so far: the full size once the upload is complete.
+     */
+    public long offsetOf(UploadSession session) {
+        if (session.getStoredFileName() != null) {
+            return session.getTotalSize();
+        }
+        try {
+            return Files.size(partPath(session.getId()));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Appends a chunk at the given offset and completes the upload once every byte has arrived.
+     *
+     * @return The session, with storedFileName set if this chunk completed it.
+     * @throws IllegalStateException when the offset is not the current one, the upload is complete,
+     *         or another chunk for it is being written.
+     * @throws IllegalArgumentException when the chunk would run past the declared size.
+     */
+    public UploadSession append(UploadSession session, long offset, InputStream chunk) throws IOException {
+        if (session.getStoredFileName() != null) {
+            throw new IllegalStateException("Upload is already complete.");
+        }
+        if (!writing.add(session.getId())) {
+            throw new IllegalStateException("Another chunk of this upload is being written.");
+        }
+        try {
+            Path part = partPath(session.getId());
+            long received;
+            try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+                received = channel.size();
+                if (offset != received) {
+                    throw new IllegalStateException("Upload-Offset " + offset + " does not match the " + received + " bytes received.");
+                }
+                channel.position(received);
+                received = writeChunk(channel, chunk, session.getTotalSize() - received, received);
+            }
+            if (received < session.getTotalSize()) {
+                return session;
+            }
+            session.setStoredFileName(fileStorageService.storeCompletedFile(part, session.getFileName()));
+            logger.debug("Upload {} complete as {}", session.getId(), session.getStoredFileName());
+            return uploadSessionRepository.save(session);
+        } finally {
+            writing.remove(session.getId());
+        }
+    }
+
+    /**
+     * Copies the request body to the part file. Bytes written before the client disconnects stay written,
+     * so the client can resume right after them.
+     */
+    private static long writeChunk(FileChannel channel, InputStream chunk, long remaining, long received) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = chunk.read(buffer)) != -1) {
+            if (read > remaining) {
+                throw new IllegalArgumentException("Chunk runs past the declared upload size.");
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            remaining -= read;
+            received += read;
+        }
+        return received;
+    }
+
+    /**
+     * Maps upload ids to their stored file names, refreshing each file so the storage collector keeps it
+     * while the listing that will refer to it is saved.
+     * @throws IllegalArgumentException when an id is unknown, belongs to another seller, is not complete,
+     *         or its file is no longer stored.
+     */
+    public Map<String, String> storedFileNames(Long sellerId, Collection<String> uploadIds) {
+        Map<String, String> fileNames = new HashMap<>();
+        for (UploadSession session : uploadSessionRepository.findByIdInAndSellerId(uploadIds, sellerId)) {
+            if (session.getStoredFileName() != null) {
+                if (!fileStorageService.retain(session.getStoredFileName())) {
+                    throw new IllegalArgumentException("Upload " + session.getId() + " is no longer stored; upload the file again.");
+                }
+                fileNames.put(session.getId(), session.getStoredFileName());
+            }
+        }
+        for (String uploadId : uploadIds) {
+            if (!fileNames.containsKey(uploadId)) {
+                throw new IllegalArgumentException("Upload " + uploadId + " does not exist or is not complete.");
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * Forgets sessions whose files now belong to a listing.
+     */
+    public void consume(Collection<String> uploadIds) {
+        uploadSessionRepository.deleteAllById(uploadIds);
+    }
+
+    /**
+     * Drops sessions older than the expiry: the part files of abandoned uploads, and the rows of completed
+     * uploads that never made it into a listing (their stored files are left to the storage collector).
+     */
+    @Scheduled(fixedDelayString = "${file.uploads.cleanup-interval-ms:3600000}", initialDelay = 60_000)
+    public void expireSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByCreatedAtBefore(LocalDateTime.now().minusHours(expiryHours));
+        for (UploadSession session : expired) {
+            if (writing.contains(session.getId())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(partPath(session.getId()));
+            } catch (IOException e) {
+                logger.warn("Could not delete part file of upload {}: {}", session.getId(), e.getMessage());
+                continue;
+            }
+            uploadSessionRepository.delete(session);
+        }
+        if (!expired.isEmpty()) {
+            logger.info("Expired {} upload sessions", expired.size());
+        }
+    }
+
+    private Path partPath(String uploadId) {
+        return partsLocation.resolve(uploadId + ".part");
+    }
+}